@@ -33,6 +33,7 @@ public enum Messages {
   ERROR_UNSUPPORTED_TITLE("Error.Unsupported.Title"), //
   FILTER("Filter.TEXT"), //
   FILTER_ALL("Filter.All.TEXT"), //
+  FILTER_MORE("Filter.More.TEXT"), //
   FILTER_TOPTEN("Filter.TopTen.TEXT"), //
   PASTE("Paste.TEXT"), //
   RESIZE_COLUMN("Resize.Column.TEXT"), //
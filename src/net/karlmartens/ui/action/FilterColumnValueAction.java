@@ -19,9 +19,8 @@ package net.karlmartens.ui.action;
 
 import java.util.Set;
 
-import net.karlmartens.platform.function.Function;
+import net.karlmartens.ui.widget.ColumnValueFilter;
 import net.karlmartens.ui.widget.TableColumn;
-import net.karlmartens.ui.widget.TableItem;
 
 import org.eclipse.jface.action.Action;
 
@@ -51,17 +50,7 @@ public final class FilterColumnValueAction extends Action {
       _accepted.add(text);
     }
 
-    _column.setFilter(new Function<TableItem,Boolean>() {
-      @Override
-      public Boolean apply(TableItem candidate) {
-        if (_accepted.isEmpty())
-          return true;
-
-        final int index = _column.table().indexOf(_column);
-        final String candidateText = candidate.getText(index);
-        return _accepted.contains(candidateText);
-      }
-    });
+    _column.setFilter(new ColumnValueFilter(_column, _accepted));
   }
 
 }
@@ -17,6 +17,8 @@
  */
 package net.karlmartens.ui.action;
 
+import java.util.Arrays;
+
 import net.karlmartens.ui.Images;
 import net.karlmartens.ui.Messages;
 import net.karlmartens.ui.widget.Table;
@@ -35,11 +37,24 @@ public final class ResizeAllColumnsAction extends Action {
     setImageDescriptor(Images.RESIZE_ALL);
   }
 
+  /**
+   * Limits the scan of each column to this many evenly spaced items, or scans
+   * every item when zero.
+   */
+  public void setSampleSize(int sampleSize) {
+    _delegateAction.setSampleSize(sampleSize);
+  }
+
   @Override
   public void run() {
-    for (int i = 0; i < _table.getColumnCount(); i++) {
-      _delegateAction.setColumnIndex(i);
-      _delegateAction.run();
+    final int[] columns = new int[_table.getColumnCount()];
+    int count = 0;
+    for (int i = 0; i < columns.length; i++) {
+      if (_table.getColumn(i).isVisible())
+        columns[count++] = i;
     }
+
+    if (count > 0)
+      _delegateAction.resize(Arrays.copyOf(columns, count));
   }
 }
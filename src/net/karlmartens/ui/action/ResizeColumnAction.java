@@ -17,18 +17,21 @@
  */
 package net.karlmartens.ui.action;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import net.karlmartens.ui.Images;
 import net.karlmartens.ui.Messages;
+import net.karlmartens.ui.util.TextExtents;
 import net.karlmartens.ui.widget.Table;
 import net.karlmartens.ui.widget.TableColumn;
-import net.karlmartens.ui.widget.TableItem;
 
 import org.eclipse.jface.action.Action;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.FontData;
 import org.eclipse.swt.graphics.GC;
@@ -41,12 +44,24 @@ public class ResizeColumnAction extends Action {
 
   private static final int IMAGE_SPACER = 6;
   private static final int TEXT_SPACER = 12;
+  // Longest texts measured per font, character counts are only a proxy for
+  // the width in proportional fonts
+  private static final int CANDIDATES = 8;
 
   private final Table _table;
   private int _columnIndex;
+  private Font _headerFont;
+  private Font _headerFontBase;
+  private int _sampleSize = 0;
 
   public ResizeColumnAction(Table table, int columnIndex) {
     _table = table;
+    _table.addDisposeListener(new DisposeListener() {
+      @Override
+      public void widgetDisposed(DisposeEvent e) {
+        disposeHeaderFont();
+      }
+    });
     setColumnIndex(columnIndex);
 
     setText(Messages.RESIZE_COLUMN.string());
@@ -58,72 +73,98 @@ public class ResizeColumnAction extends Action {
     updateEnablement();
   }
 
+  /**
+   * Limits the scan to this many evenly spaced items, or scans every item
+   * when zero.
+   */
+  public void setSampleSize(int sampleSize) {
+    _sampleSize = Math.max(0, sampleSize);
+  }
+
   @Override
   public void run() {
     if (!isEnabled())
       return;
 
-    final GC gc = new GC(_table);
-    final Font font = createColumnHeaderFont();
-    gc.setFont(font);
-
-    final TableColumn column = _table.getColumn(_columnIndex);
-    int width = gc.textExtent(column.getText()).x + TEXT_SPACER;
+    resize(new int[] { _columnIndex });
+  }
 
-    final Image columnImage = column.getImage();
-    if (columnImage != null) {
-      width += columnImage.getBounds().width + TEXT_SPACER;
+  /**
+   * Resizes the columns to fit their header and content. The content is
+   * scanned off the UI thread and only the longest texts are measured.
+   */
+  void resize(int[] columns) {
+    final int[] textColumns = new int[columns.length];
+    int count = 0;
+    for (int index : columns) {
+      if ((_table.getColumn(index).getStyle() & SWT.CHECK) == 0)
+        textColumns[count++] = index;
     }
 
-    if ((column.getStyle() & SWT.CHECK) > 0) {
-      width = Math.max(width,
-          CheckableCellRenderer.IMAGE_CHECKED.getImageData().width
-              + IMAGE_SPACER);
-    } else {
-      final Map<Font, String> messages = new HashMap<Font, String>();
-
-      for (int i = 0; i < _table.getItemCount(); i++) {
-        final TableItem item = _table.getItem(i);
-        final Font f = item.getFont(_columnIndex);
-        final String m1 = messages.get(f);
-        final String m2 = item.getText(_columnIndex);
-        if (m1 == null) {
-          messages.put(f, m2);
-          continue;
-        }
+    final List<Map<Font, String[]>> texts = _table.getLongestTexts(
+        Arrays.copyOf(textColumns, count), CANDIDATES, _sampleSize);
 
-        if (m2 == null) {
-          messages.put(f, m1);
-          continue;
+    final GC gc = new GC(_table);
+    _table.beginUpdate();
+    try {
+      int next = 0;
+      for (int index : columns) {
+        final TableColumn column = _table.getColumn(index);
+        gc.setFont(getColumnHeaderFont());
+        int width = TextExtents.textExtent(gc, column.getText()).x
+            + TEXT_SPACER;
+
+        final Image columnImage = column.getImage();
+        if (columnImage != null) {
+          width += columnImage.getBounds().width + TEXT_SPACER;
         }
 
-        if (m2.length() > m1.length()) {
-          messages.put(f, m2);
+        if ((column.getStyle() & SWT.CHECK) > 0) {
+          width = Math.max(width,
+              CheckableCellRenderer.IMAGE_CHECKED.getImageData().width
+                  + IMAGE_SPACER);
+        } else {
+          for (Entry<Font, String[]> entry : texts.get(next++).entrySet()) {
+            gc.setFont(entry.getKey());
+            for (String text : entry.getValue()) {
+              width = Math.max(width, TextExtents.textExtent(gc, text).x
+                  + TEXT_SPACER);
+            }
+          }
         }
-      }
 
-      for (Entry<Font, String> entry : messages.entrySet()) {
-        width = Math
-            .max(width, gc.textExtent(entry.getValue()).x + TEXT_SPACER);
+        if (width > 0)
+          column.setWidth(width);
       }
+    } finally {
+      _table.endUpdate();
+      gc.dispose();
     }
-
-    gc.dispose();
-    font.dispose();
-
-    if (width <= 0)
-      return;
-
-    column.setWidth(width);
   }
 
-  private Font createColumnHeaderFont() {
+  private Font getColumnHeaderFont() {
+    // Reused across runs so measurements of the header text stay cached
+    final Font base = _table.getFont();
+    if (_headerFont != null && _headerFontBase == base)
+      return _headerFont;
+
+    disposeHeaderFont();
     final Display display = _table.getDisplay();
-    final FontData[] fontData = _table.getFont().getFontData();
+    final FontData[] fontData = base.getFontData();
     for (int i = 0; i < fontData.length; i++) {
       fontData[i].setStyle(SWT.BOLD);
     }
-    return new Font(display, fontData);
+    _headerFont = new Font(display, fontData);
+    _headerFontBase = base;
+    return _headerFont;
+  }
+
+  private void disposeHeaderFont() {
+    if (_headerFont != null)
+      _headerFont.dispose();
+
+    _headerFont = null;
+    _headerFontBase = null;
   }
 
   private void updateEnablement() {
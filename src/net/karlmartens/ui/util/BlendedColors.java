@@ -0,0 +1,103 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Per display registry of colours produced by {@link Colors#blend}. Owners
+ * {@link #acquire(Display)} the registry and {@link #release()} it when they
+ * are disposed; the colours are disposed with the last owner.
+ */
+public final class BlendedColors {
+
+  private static final Map<Display, BlendedColors> _registries = new HashMap<Display, BlendedColors>();
+
+  private final Display _display;
+  private final Map<Long, Color> _colors = new HashMap<Long, Color>();
+  private int _references = 0;
+
+  private BlendedColors(Display display) {
+    _display = display;
+  }
+
+  public static BlendedColors acquire(Display display) {
+    if (display == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    if (display.isDisposed())
+      SWT.error(SWT.ERROR_DEVICE_DISPOSED);
+
+    synchronized (_registries) {
+      BlendedColors registry = _registries.get(display);
+      if (registry == null) {
+        registry = new BlendedColors(display);
+        _registries.put(display, registry);
+      }
+      registry._references++;
+      return registry;
+    }
+  }
+
+  public void release() {
+    synchronized (_registries) {
+      if (_references == 0 || --_references > 0)
+        return;
+
+      _registries.remove(_display);
+    }
+
+    for (Color color : _colors.values()) {
+      color.dispose();
+    }
+    _colors.clear();
+  }
+
+  /**
+   * Returns the colour of <code>src</code> drawn over <code>dst</code> with
+   * the given alpha. The colour is owned by the registry and must not be
+   * disposed.
+   */
+  public Color get(RGB dst, RGB src, double srcAlpha) {
+    if (dst == null || src == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    if (_references == 0)
+      SWT.error(SWT.ERROR_WIDGET_DISPOSED);
+
+    final long alpha = Math.round(Math.max(0.0, Math.min(1.0, srcAlpha)) * 255);
+    final Long key = (pack(dst) << 32) | (pack(src) << 8) | alpha;
+    Color color = _colors.get(key);
+    if (color == null) {
+      color = new Color(_display, Colors.blend(dst, src, alpha / 255.0));
+      _colors.put(key, color);
+    }
+    return color;
+  }
+
+  private static long pack(RGB rgb) {
+    return ((rgb.red & 0xFF) << 16) | ((rgb.green & 0xFF) << 8)
+        | (rgb.blue & 0xFF);
+  }
+}
@@ -0,0 +1,418 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.Locale;
+
+import org.eclipse.swt.SWT;
+
+/**
+ * Locale aware {@link DoubleFormat} for plain decimals: optional grouping of
+ * the integer digits, a range of fraction digits and negatives shown with a
+ * minus sign or in parentheses. Instances are immutable and thread safe.
+ * <p>
+ * Values are rounded half even on their exact binary value, as
+ * {@link DecimalFormat} does, and are written into a per-thread buffer, so
+ * formatting allocates nothing but the result. Parsing allocates nothing for
+ * inputs of up to 15 significant digits. Longer inputs are handed to
+ * {@link Double#parseDouble(String)}, and values too large to scale exactly
+ * are formatted through {@link BigDecimal}.
+ */
+public final class DecimalFormatter implements DoubleFormat {
+
+  private static final int MAXIMUM_FRACTION_DIGITS = 15;
+  private static final double EXACT_LIMIT = 9007199254740992.0; // 2^53
+  private static final double SPLITTER = 134217729.0; // 2^27 + 1
+  private static final long[] POWERS = new long[MAXIMUM_FRACTION_DIGITS + 1];
+  private static final double[] DOUBLE_POWERS = new double[POWERS.length];
+
+  static {
+    long power = 1;
+    for (int i = 0; i < POWERS.length; i++) {
+      POWERS[i] = power;
+      DOUBLE_POWERS[i] = power;
+      power *= 10;
+    }
+  }
+
+  private static final ThreadLocal<char[]> _buffers = new ThreadLocal<char[]>() {
+    @Override
+    protected char[] initialValue() {
+      return new char[64];
+    }
+  };
+
+  private final Locale _locale;
+  private final char _zero;
+  private final char _decimal;
+  private final char _grouping;
+  private final char _minus;
+  private final String _nan;
+  private final String _infinity;
+  private final int _groupingSize;
+  private final boolean _grouped;
+  private final boolean _parentheses;
+  private final int _minimumFractionDigits;
+  private final int _maximumFractionDigits;
+
+  private DecimalFormatter(Locale locale, boolean grouped,
+      boolean parentheses, int minimumFractionDigits,
+      int maximumFractionDigits) {
+    final DecimalFormatSymbols symbols = DecimalFormatSymbols
+        .getInstance(locale);
+    final NumberFormat format = NumberFormat.getNumberInstance(locale);
+    _locale = locale;
+    _zero = symbols.getZeroDigit();
+    _decimal = symbols.getDecimalSeparator();
+    _grouping = symbols.getGroupingSeparator();
+    _minus = symbols.getMinusSign();
+    _nan = symbols.getNaN();
+    _infinity = symbols.getInfinity();
+    final int groupingSize = format instanceof DecimalFormat
+        ? ((DecimalFormat) format).getGroupingSize() : 0;
+    _groupingSize = groupingSize > 0 ? groupingSize : 3;
+    _grouped = grouped;
+    _parentheses = parentheses;
+    _minimumFractionDigits = minimumFractionDigits;
+    _maximumFractionDigits = maximumFractionDigits;
+  }
+
+  /**
+   * Returns a formatter for the default locale that, like
+   * {@link NumberFormat#getNumberInstance()}, groups the integer digits and
+   * shows up to three fraction digits.
+   */
+  public static DecimalFormatter getInstance() {
+    return getInstance(Locale.getDefault());
+  }
+
+  public static DecimalFormatter getInstance(Locale locale) {
+    if (locale == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    return new DecimalFormatter(locale, true, false, 0, 3);
+  }
+
+  /**
+   * Returns a formatter showing at least <code>minimum</code> and at most
+   * <code>maximum</code> fraction digits, with trailing zeros dropped in
+   * between. Both equal gives a fixed number of fraction digits.
+   */
+  public DecimalFormatter withFractionDigits(int minimum, int maximum) {
+    if (minimum < 0 || maximum < minimum
+        || maximum > MAXIMUM_FRACTION_DIGITS)
+      SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+
+    return new DecimalFormatter(_locale, _grouped, _parentheses, minimum,
+        maximum);
+  }
+
+  public DecimalFormatter withGrouping(boolean grouped) {
+    return new DecimalFormatter(_locale, grouped, _parentheses,
+        _minimumFractionDigits, _maximumFractionDigits);
+  }
+
+  /**
+   * Returns a formatter showing negatives in parentheses rather than with a
+   * minus sign. Both forms are parsed either way.
+   */
+  public DecimalFormatter withParentheses(boolean parentheses) {
+    return new DecimalFormatter(_locale, _grouped, parentheses,
+        _minimumFractionDigits, _maximumFractionDigits);
+  }
+
+  @Override
+  public String format(double value) {
+    final char[] buffer = _buffers.get();
+    final int start = write(value, buffer);
+    if (start < 0)
+      return format(value, new StringBuilder()).toString();
+
+    return new String(buffer, start, buffer.length - start);
+  }
+
+  @Override
+  public StringBuilder format(double value, StringBuilder target) {
+    if (target == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    if (Double.isNaN(value))
+      return target.append(_nan);
+
+    if (Double.isInfinite(value))
+      return appendSigned(target, value < 0, _infinity);
+
+    final char[] buffer = _buffers.get();
+    final int start = write(value, buffer);
+    if (start >= 0)
+      return target.append(buffer, start, buffer.length - start);
+
+    // Too large to scale exactly, round the shortest decimal form instead
+    final BigDecimal rounded = BigDecimal.valueOf(Math.abs(value)).setScale(
+        _maximumFractionDigits, RoundingMode.HALF_EVEN);
+    final String digits = rounded.unscaledValue().toString();
+    // Room for a separator per digit and the leading zero of fractions
+    final char[] wide = new char[2 * digits.length() + 2];
+    final int pos = write(digits, wide);
+    return appendSigned(target, value < 0, new String(wide, pos, wide.length
+        - pos));
+  }
+
+  @Override
+  public double parse(String text) throws ParseException {
+    if (text == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    int start = 0;
+    int end = text.length();
+    while (start < end && Character.isWhitespace(text.charAt(start))) {
+      start++;
+    }
+    while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+      end--;
+    }
+    if (start == end)
+      throw unparseable(text, start);
+
+    boolean negative = false;
+    final char first = text.charAt(start);
+    if (first == '(' && end - start > 1 && text.charAt(end - 1) == ')') {
+      negative = true;
+      start++;
+      end--;
+    } else if (first == _minus || first == '-') {
+      negative = true;
+      start++;
+    } else if (first == '+') {
+      start++;
+    }
+
+    if (text.regionMatches(start, _nan, 0, _nan.length())
+        && start + _nan.length() == end)
+      return Double.NaN;
+
+    if (text.regionMatches(start, _infinity, 0, _infinity.length())
+        && start + _infinity.length() == end)
+      return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+
+    long mantissa = 0;
+    int scale = 0;
+    boolean digits = false;
+    boolean decimal = false;
+    boolean exact = true;
+    for (int i = start; i < end; i++) {
+      final char c = text.charAt(i);
+      final int digit = digit(c);
+      if (digit >= 0) {
+        digits = true;
+        if (decimal)
+          scale++;
+        if (mantissa > ((long) EXACT_LIMIT - digit) / 10
+            || scale > MAXIMUM_FRACTION_DIGITS) {
+          exact = false;
+        } else {
+          mantissa = mantissa * 10 + digit;
+        }
+      } else if (c == _decimal && !decimal) {
+        decimal = true;
+      } else if (decimal || !isGrouping(c)) {
+        throw unparseable(text, i);
+      }
+    }
+    if (!digits)
+      throw unparseable(text, start);
+
+    final double value;
+    if (exact) {
+      // Both operands are exact, so the quotient is correctly rounded
+      value = mantissa / DOUBLE_POWERS[scale];
+    } else {
+      value = parseDigits(text, start, end);
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Writes the magnitude of a finite value, with its sign, at the end of the
+   * buffer and returns where it starts, or -1 when the value is too large to
+   * be scaled exactly.
+   */
+  private int write(double value, char[] buffer) {
+    if (Double.isNaN(value) || Double.isInfinite(value))
+      return -1;
+
+    final double magnitude = Math.abs(value);
+    final double power = DOUBLE_POWERS[_maximumFractionDigits];
+    final double scaled = magnitude * power;
+    if (scaled >= EXACT_LIMIT)
+      return -1;
+
+    final long units = round(magnitude, power, scaled);
+    int pos = buffer.length;
+    final boolean negative = value < 0 && units != 0;
+    if (negative && _parentheses)
+      buffer[--pos] = ')';
+
+    pos = write(units, buffer, pos);
+    if (negative)
+      buffer[--pos] = _parentheses ? '(' : _minus;
+    return pos;
+  }
+
+  /**
+   * Writes the unscaled digits at the end of the buffer and returns where
+   * they start.
+   */
+  private int write(String digits, char[] buffer) {
+    int pos = buffer.length;
+    int fractionDigits = _maximumFractionDigits;
+    int last = digits.length();
+    while (fractionDigits > _minimumFractionDigits
+        && digits.charAt(last - 1) == '0') {
+      last--;
+      fractionDigits--;
+    }
+
+    int i = last;
+    for (int f = 0; f < fractionDigits; f++) {
+      buffer[--pos] = i > 0 ? (char) (_zero + digits.charAt(--i) - '0')
+          : _zero;
+    }
+    if (fractionDigits > 0)
+      buffer[--pos] = _decimal;
+
+    int count = 0;
+    do {
+      if (_grouped && count > 0 && count % _groupingSize == 0)
+        buffer[--pos] = _grouping;
+      buffer[--pos] = i > 0 ? (char) (_zero + digits.charAt(--i) - '0')
+          : _zero;
+      count++;
+    } while (i > 0);
+    return pos;
+  }
+
+  private int write(long units, char[] buffer, int end) {
+    int pos = end;
+    int fractionDigits = _maximumFractionDigits;
+    while (fractionDigits > _minimumFractionDigits && units % 10 == 0) {
+      units /= 10;
+      fractionDigits--;
+    }
+
+    for (int i = 0; i < fractionDigits; i++) {
+      buffer[--pos] = (char) (_zero + units % 10);
+      units /= 10;
+    }
+    if (fractionDigits > 0)
+      buffer[--pos] = _decimal;
+
+    int count = 0;
+    do {
+      if (_grouped && count > 0 && count % _groupingSize == 0)
+        buffer[--pos] = _grouping;
+      buffer[--pos] = (char) (_zero + units % 10);
+      units /= 10;
+      count++;
+    } while (units > 0);
+    return pos;
+  }
+
+  private StringBuilder appendSigned(StringBuilder target, boolean negative,
+      String magnitude) {
+    if (!negative)
+      return target.append(magnitude);
+
+    if (_parentheses)
+      return target.append('(').append(magnitude).append(')');
+
+    return target.append(_minus).append(magnitude);
+  }
+
+  private double parseDigits(String text, int start, int end) {
+    final StringBuilder digits = new StringBuilder(end - start);
+    for (int i = start; i < end; i++) {
+      final char c = text.charAt(i);
+      final int digit = digit(c);
+      if (digit >= 0) {
+        digits.append((char) ('0' + digit));
+      } else if (c == _decimal) {
+        digits.append('.');
+      }
+    }
+    return Double.parseDouble(digits.toString());
+  }
+
+  private boolean isGrouping(char c) {
+    // Typed input has plain spaces where the locale groups with another one
+    return c == _grouping || (c == ' ' && Character.isSpaceChar(_grouping));
+  }
+
+  private int digit(char c) {
+    if (c >= _zero && c <= _zero + 9)
+      return c - _zero;
+
+    if (c >= '0' && c <= '9')
+      return c - '0';
+
+    return -1;
+  }
+
+  /**
+   * Rounds the exact product of the magnitude and the power half even, given
+   * the product as rounded by the multiplication.
+   */
+  private static long round(double magnitude, double power, double scaled) {
+    final double floor = Math.floor(scaled);
+    final double fraction = scaled - floor;
+    long units = (long) floor;
+    if (fraction > 0.5) {
+      units++;
+    } else if (fraction == 0.5) {
+      // Only a tie can be decided by the rounding error of the product
+      final double error = productError(magnitude, power, scaled);
+      if (error > 0 || (error == 0 && (units & 1) != 0))
+        units++;
+    }
+    return units;
+  }
+
+  /**
+   * Returns the exact product of a and b less its rounded value p, using
+   * Dekker's splitting.
+   */
+  private static double productError(double a, double b, double p) {
+    double t = SPLITTER * a;
+    final double ah = t - (t - a);
+    final double al = a - ah;
+    t = SPLITTER * b;
+    final double bh = t - (t - b);
+    final double bl = b - bh;
+    return ((ah * bh - p) + ah * bl + al * bh) + al * bl;
+  }
+
+  private static ParseException unparseable(String text, int offset) {
+    return new ParseException("Unparseable number: \"" + text + "\"", offset);
+  }
+}
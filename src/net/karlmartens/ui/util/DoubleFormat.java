@@ -0,0 +1,37 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.util;
+
+import java.text.ParseException;
+
+/**
+ * Formats and parses the values of numeric cells. Implementations are
+ * expected to be thread safe, so values can be formatted off the UI thread.
+ */
+public interface DoubleFormat {
+
+  String format(double value);
+
+  /**
+   * Appends the formatted value to the target and returns it.
+   */
+  StringBuilder format(double value, StringBuilder target);
+
+  double parse(String text) throws ParseException;
+
+}
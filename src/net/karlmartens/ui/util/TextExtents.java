@@ -0,0 +1,155 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * Shared, bounded cache of text extents keyed on font and text. Numeric text
+ * is estimated from the widths of its characters, which are measured once per
+ * font.
+ * <p>
+ * Fonts are compared by identity, since the handle of a disposed font may be
+ * reused by another one.
+ */
+public final class TextExtents {
+
+  private static final int CAPACITY = 4096;
+  private static final int FONT_CAPACITY = 32;
+  private static final String NUMERIC = "0123456789.,-+ %()$";
+
+  private static final Map<Key, Point> _extents = new LinkedHashMap<Key, Point>(
+      CAPACITY, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Point> eldest) {
+      return size() > CAPACITY;
+    }
+  };
+
+  private static final Map<Key, int[]> _numericWidths = new LinkedHashMap<Key, int[]>(
+      FONT_CAPACITY, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+      return size() > FONT_CAPACITY;
+    }
+  };
+
+  private TextExtents() {
+    // Utility class
+  }
+
+  /**
+   * Returns the extent of the text drawn with the font of the gc, as
+   * {@link GC#textExtent(String)} would. The returned point must not be
+   * modified.
+   */
+  public static synchronized Point textExtent(GC gc, String text) {
+    if (gc == null || text == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    final Font font = gc.getFont();
+    if (isNumeric(text))
+      return estimateNumeric(gc, font, text);
+
+    final Key key = new Key(font, text);
+    Point extent = _extents.get(key);
+    if (extent == null) {
+      extent = gc.textExtent(text);
+      _extents.put(key, extent);
+    }
+    return extent;
+  }
+
+  public static synchronized void clear() {
+    _extents.clear();
+    _numericWidths.clear();
+  }
+
+  private static Point estimateNumeric(GC gc, Font font, String text) {
+    final Key key = new Key(font, "");
+    int[] widths = _numericWidths.get(key);
+    if (widths == null) {
+      // The last slot holds the line height
+      widths = new int[NUMERIC.length() + 1];
+      for (int i = 0; i < NUMERIC.length(); i++) {
+        widths[i] = gc.textExtent(NUMERIC.substring(i, i + 1)).x;
+      }
+      widths[NUMERIC.length()] = gc.textExtent(NUMERIC).y;
+      _numericWidths.put(key, widths);
+    }
+
+    int width = 0;
+    for (int i = 0; i < text.length(); i++) {
+      width += widths[NUMERIC.indexOf(text.charAt(i))];
+    }
+    return new Point(width, widths[NUMERIC.length()]);
+  }
+
+  private static boolean isNumeric(String text) {
+    if (text.isEmpty())
+      return false;
+
+    boolean digit = false;
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        digit = true;
+      } else if (NUMERIC.indexOf(c) < 0) {
+        return false;
+      }
+    }
+    return digit;
+  }
+
+  private static final class Key {
+    private final Font _font;
+    private final String _text;
+
+    private Key(Font font, String text) {
+      _font = font;
+      _text = text;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(_font) + _text.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+
+      if (!(obj instanceof Key))
+        return false;
+
+      final Key other = (Key) obj;
+      return _font == other._font && _text.equals(other._text);
+    }
+  }
+}
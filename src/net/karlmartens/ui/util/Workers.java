@@ -0,0 +1,126 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared pool of daemon threads used to spread expensive table computations
+ * across the available processors.
+ */
+public final class Workers {
+
+  private static final String THREAD_NAME = "net.karlmartens.ui.Worker-";
+  private static final String BACKGROUND_NAME = "net.karlmartens.ui.Background";
+
+  private static ExecutorService _executor;
+  private static ExecutorService _background;
+
+  private Workers() {
+    // Nothing to do
+  }
+
+  public static int getParallelism() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  public static synchronized ExecutorService getExecutor() {
+    if (_executor == null) {
+      final AtomicInteger count = new AtomicInteger();
+      _executor = Executors.newFixedThreadPool(getParallelism(),
+          new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+              final Thread thread = new Thread(r, THREAD_NAME
+                  + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+    return _executor;
+  }
+
+  /**
+   * Returns a single thread executor for requests that run in the background
+   * of the UI. Its thread is not a worker, so requests can spread their work
+   * over the pool with {@link #invokeAll(Collection)}.
+   */
+  public static synchronized ExecutorService getBackgroundExecutor() {
+    if (_background == null) {
+      _background = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          final Thread thread = new Thread(r, BACKGROUND_NAME);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return _background;
+  }
+
+  public static boolean isWorkerThread() {
+    return Thread.currentThread().getName().startsWith(THREAD_NAME);
+  }
+
+  /**
+   * Runs the tasks and waits for all of them to complete. Tasks are run on the
+   * calling thread when it is itself a worker, so that nested calls cannot
+   * starve the pool.
+   */
+  public static <T> List<T> invokeAll(Collection<? extends Callable<T>> tasks) {
+    final List<T> results = new ArrayList<T>(tasks.size());
+    try {
+      if (tasks.size() <= 1 || isWorkerThread()) {
+        for (Callable<T> task : tasks) {
+          results.add(task.call());
+        }
+        return results;
+      }
+
+      for (Future<T> future : getExecutor().invokeAll(tasks)) {
+        results.add(future.get());
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException(cause);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
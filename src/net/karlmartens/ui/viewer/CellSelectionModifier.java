@@ -17,6 +17,7 @@
  */
 package net.karlmartens.ui.viewer;
 
+import net.karlmartens.ui.widget.CellSelection;
 import net.karlmartens.ui.widget.TableColumn;
 import net.karlmartens.ui.widget.TableItem;
 
@@ -64,6 +65,12 @@ public abstract class CellSelectionModifier {
     }
   }
 
+  protected final void setValues(CellSelection cells, String value) {
+    for (Point cell : cells) {
+      setValue(cell, value);
+    }
+  }
+
   private TableViewerColumn getViewerColumn(int index) {
     final TableColumn column = (TableColumn) _viewer.doGetColumn(index);
     return (TableViewerColumn) column.getData(Policy.JFACE + ".columnViewer");
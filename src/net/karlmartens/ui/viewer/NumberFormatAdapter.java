@@ -0,0 +1,51 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.viewer;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+
+import net.karlmartens.ui.util.DoubleFormat;
+
+/**
+ * Presents a {@link NumberFormat} as a {@link DoubleFormat}. Calls are
+ * serialized, since number formats are not thread safe.
+ */
+final class NumberFormatAdapter implements DoubleFormat {
+
+  private final NumberFormat _format;
+
+  NumberFormatAdapter(NumberFormat format) {
+    _format = format;
+  }
+
+  @Override
+  public synchronized String format(double value) {
+    return _format.format(value);
+  }
+
+  @Override
+  public synchronized StringBuilder format(double value, StringBuilder target) {
+    return target.append(_format.format(value));
+  }
+
+  @Override
+  public synchronized double parse(String text) throws ParseException {
+    return _format.parse(text).doubleValue();
+  }
+}
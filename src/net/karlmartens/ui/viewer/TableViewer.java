@@ -17,6 +17,7 @@
  */
 package net.karlmartens.ui.viewer;
 
+import net.karlmartens.ui.widget.CellSelection;
 import net.karlmartens.ui.widget.Table;
 import net.karlmartens.ui.widget.TableColumn;
 import net.karlmartens.ui.widget.TableItem;
@@ -206,6 +207,10 @@ public class TableViewer extends AbstractTableViewer {
     return _control.getCellSelections();
   }
 
+  protected final CellSelection doGetCellSelection() {
+    return _control.getCellSelection();
+  }
+
   protected final Point doGetFocusCell() {
     return _control.getFocusCell();
   }
@@ -216,6 +221,12 @@ public class TableViewer extends AbstractTableViewer {
 
   @Override
   protected final void preservingSelection(Runnable updateCode) {
-    _control.retainSelection(updateCode);
+    // Refreshes lay out and repaint the table once
+    _control.beginUpdate();
+    try {
+      _control.retainSelection(updateCode);
+    } finally {
+      _control.endUpdate();
+    }
   }
 }
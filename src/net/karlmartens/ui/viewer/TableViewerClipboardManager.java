@@ -30,7 +30,6 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 
 import net.karlmartens.platform.function.Pair;
@@ -42,6 +41,7 @@ import net.karlmartens.ui.action.CutTableViewerAction;
 import net.karlmartens.ui.action.DeleteTableViewerAction;
 import net.karlmartens.ui.action.PasteTableViewerAction;
 import net.karlmartens.ui.action.SelectAllTableViewerAction;
+import net.karlmartens.ui.widget.CellSelection;
 import net.karlmartens.ui.widget.ClipboardStrategy;
 import net.karlmartens.ui.widget.Table;
 import net.karlmartens.ui.widget.TableColumn;
@@ -336,22 +336,26 @@ public final class TableViewerClipboardManager extends CellSelectionModifier {
     };
   }
 
-  private Pair<Integer, Point[]> computeRegion() {
-    final Point[] cells = _viewer.doGetCellSelections();
-    Arrays.sort(cells, _comparator);
-    final int length = computeRegion(cells);
-    if (length <= 0)
-      return Pair.of(0, new Point[0]);
-
-    return Pair.of(length, cells);
+  /**
+   * Returns the selected rows and columns, or <code>null</code> when the
+   * selected cells do not form a grid.
+   */
+  private Pair<int[], int[]> computeRegion() {
+    final CellSelection selection = _viewer.doGetCellSelection();
+    final int[] rows = selection.getRows();
+    final int[] columns = selection.getColumns();
+    if (selection.getCellCount() != rows.length * columns.length)
+      return null;
+
+    return Pair.of(rows, columns);
   }
 
   public boolean isCopyEnabled() {
     if (!isOperationEnabled(OPERATION_COPY))
       return false;
 
-    final int length = computeRegion().a();
-    return length > 0;
+    final Pair<int[], int[]> region = computeRegion();
+    return region != null && region.b().length > 0;
   }
 
   public boolean copy() {
@@ -359,23 +363,23 @@ public final class TableViewerClipboardManager extends CellSelectionModifier {
     BusyIndicator.showWhile(_viewer.getControl().getDisplay(), new Runnable() {
       @Override
       public void run() {
-        final Pair<Integer, Point[]> region = computeRegion();
-        final int length = region.a();
-        if (length <= 0) {
-          result[0] = region.a() == 0;
+        final Pair<int[], int[]> region = computeRegion();
+        if (region == null || region.b().length <= 0) {
+          result[0] = region != null;
           return;
         }
 
         _viewer.cancelEditing();
 
-        final String[] values = getValues(region.b());
-
+        final int[] columns = region.b();
         final StringWriter sw = new StringWriter();
         final CSVWriter writer = new CSVWriter(sw, '\t');
-        for (int i = 0; i < values.length / length; i++) {
-          final String[] row = new String[length];
-          System.arraycopy(values, i * length, row, 0, row.length);
-          writer.writeNext(row);
+        for (int y : region.a()) {
+          final Point[] cells = new Point[columns.length];
+          for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Point(columns[i], y);
+          }
+          writer.writeNext(getValues(cells));
         }
 
         try {
@@ -405,9 +409,8 @@ public final class TableViewerClipboardManager extends CellSelectionModifier {
     if (!isOperationEnabled(OPERATION_PASTE))
       return false;
 
-    final Pair<Integer, Point[]> region = computeRegion();
-    final int length = region.a();
-    return length > 0;
+    final Pair<int[], int[]> region = computeRegion();
+    return region != null && region.b().length > 0;
   }
 
   public boolean paste() {
@@ -415,10 +418,9 @@ public final class TableViewerClipboardManager extends CellSelectionModifier {
     BusyIndicator.showWhile(_viewer.getControl().getDisplay(), new Runnable() {
       @Override
       public void run() {
-        final Pair<Integer, Point[]> region = computeRegion();
-        final int length = region.a();
-        if (length <= 0) {
-          result[0] = length == 0;
+        final Pair<int[], int[]> region = computeRegion();
+        if (region == null || region.b().length <= 0) {
+          result[0] = region != null;
           return;
         }
 
@@ -436,10 +438,11 @@ public final class TableViewerClipboardManager extends CellSelectionModifier {
           dataRect.width = Math.max(dataRect.width, dataRow.length);
         }
 
-        final Point[] cells = region.b();
-        final Point anchor = cells[0];
+        final int height = region.a().length;
+        final int length = region.b().length;
+        final Point anchor = new Point(region.b()[0], region.a()[0]);
         final Rectangle targetRect;
-        if (cells.length == 1) {
+        if (height == 1 && length == 1) {
           // Paste top-left anchor
           targetRect = computeViewerAvailableCellBlock(new Rectangle(anchor.x,
               anchor.y, dataRect.width, dataRect.height));
@@ -447,7 +450,7 @@ public final class TableViewerClipboardManager extends CellSelectionModifier {
         } else if (dataRect.width == 1 || dataRect.height == 1) {
           // Fill
           targetRect = computeViewerAvailableCellBlock(new Rectangle(anchor.x,
-              anchor.y, length, cells.length / length));
+              anchor.y, length, height));
 
           final String[][] newData = new String[targetRect.height][targetRect.width];
           if (dataRect.width == 1) {
@@ -472,7 +475,7 @@ public final class TableViewerClipboardManager extends CellSelectionModifier {
         } else {
           // Paste into region
           targetRect = computeViewerAvailableCellBlock(new Rectangle(anchor.x,
-              anchor.y, length, cells.length / length));
+              anchor.y, length, height));
         }
 
         final Point[] targetCells = computeCells(targetRect);
@@ -495,8 +498,7 @@ public final class TableViewerClipboardManager extends CellSelectionModifier {
     if (!isOperationEnabled(OPERATION_DELETE) || _viewer.isCellEditorActive())
       return false;
 
-    final Point[] cells = _viewer.doGetCellSelections();
-    return cells != null && cells.length > 0;
+    return !_viewer.doGetCellSelection().isEmpty();
   }
 
   public boolean delete() {
@@ -511,10 +513,7 @@ public final class TableViewerClipboardManager extends CellSelectionModifier {
 
         _viewer.cancelEditing();
 
-        final Point[] cells = _viewer.doGetCellSelections();
-        final String[] values = new String[cells.length];
-        Arrays.fill(values, "");
-        setValues(cells, values);
+        setValues(_viewer.doGetCellSelection(), "");
         _viewer.refresh(true);
         result[0] = true;
       }
@@ -574,34 +573,6 @@ public final class TableViewerClipboardManager extends CellSelectionModifier {
     }
   }
 
-  private static int computeRegion(Point[] cells) {
-    if (cells == null || cells.length == 0)
-      return 0;
-
-    final Point origin = cells[0];
-    int length = 0;
-    for (Point cell : cells) {
-      if (cell.y != origin.y)
-        break;
-
-      length++;
-    }
-
-    if ((cells.length % length) != 0)
-      return -1;
-
-    for (int i = length; i < cells.length; i++) {
-      final int cIdx = i % length;
-      if (cIdx != 0 && cells[i].y != cells[i - 1].y)
-        return -1;
-
-      if (cells[cIdx].x != cells[i].x)
-        return -1;
-    }
-
-    return length;
-  }
-
   private Point[] computeCells(Rectangle region) {
     final Table t = _viewer.getControl();
 
@@ -675,26 +646,6 @@ public final class TableViewerClipboardManager extends CellSelectionModifier {
     ErrorDialog.openError(shell, title, null, status);
   }
 
-  private final Comparator<Point> _comparator = new Comparator<Point>() {
-    @Override
-    public int compare(Point o1, Point o2) {
-      if (o1 == o2)
-        return 0;
-
-      if (o1 == null)
-        return -1;
-
-      if (o2 == null)
-        return 1;
-
-      int i = o1.y - o2.y;
-      if (i != 0)
-        return i;
-
-      return o1.x - o2.x;
-    }
-  };
-
   public void createContextMenu() {
     final IMenuManager mm = _viewer.getControl().getMenuManager();
 
@@ -0,0 +1,344 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.viewer;
+
+import java.util.Arrays;
+
+import org.eclipse.swt.SWT;
+
+/**
+ * Combines the values of the rows feeding the sparkline of a
+ * {@link TimeSeriesTableViewer} into one value per period, optionally with a
+ * band around them. Rows are handed over as slices of a primitive array, so
+ * the built-in aggregations run plain loops over doubles that the JIT can
+ * vectorise.
+ */
+public abstract class TimeSeriesAggregation {
+
+  public static final TimeSeriesAggregation SUM = new TimeSeriesAggregation() {
+    @Override
+    public Accumulator start(int periods) {
+      return new Sum(periods, false);
+    }
+  };
+
+  public static final TimeSeriesAggregation MEAN = new TimeSeriesAggregation() {
+    @Override
+    public Accumulator start(int periods) {
+      return new Sum(periods, true);
+    }
+  };
+
+  public static final TimeSeriesAggregation MIN = new TimeSeriesAggregation() {
+    @Override
+    public Accumulator start(int periods) {
+      return new Extremes(periods, Extremes.MIN);
+    }
+  };
+
+  public static final TimeSeriesAggregation MAX = new TimeSeriesAggregation() {
+    @Override
+    public Accumulator start(int periods) {
+      return new Extremes(periods, Extremes.MAX);
+    }
+  };
+
+  /**
+   * The mean of every period, within a band from the lowest to the highest
+   * value.
+   */
+  public static final TimeSeriesAggregation ENVELOPE = new TimeSeriesAggregation() {
+    @Override
+    public Accumulator start(int periods) {
+      return new Extremes(periods, Extremes.ENVELOPE);
+    }
+  };
+
+  public static final TimeSeriesAggregation COUNT_NON_ZERO = new TimeSeriesAggregation() {
+    @Override
+    public Accumulator start(int periods) {
+      return new CountNonZero(periods);
+    }
+  };
+
+  /**
+   * Returns the aggregation showing the median of every period, within a band
+   * between the given percentiles, each from 0 to 1. Percentiles are taken by
+   * nearest rank.
+   */
+  public static TimeSeriesAggregation percentiles(final double low,
+      final double high) {
+    if (low < 0.0 || high > 1.0 || low > high)
+      SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+
+    return new TimeSeriesAggregation() {
+      @Override
+      public Accumulator start(int periods) {
+        return new Percentiles(periods, low, high);
+      }
+    };
+  }
+
+  /**
+   * Returns an empty accumulator for rows of the given number of periods.
+   */
+  public abstract Accumulator start(int periods);
+
+  public abstract static class Accumulator {
+
+    /**
+     * Adds a row, whose values for the periods start at the offset.
+     */
+    public abstract void add(double[] values, int offset);
+
+    /**
+     * Takes off a row added before. Returns <code>false</code>, having changed
+     * nothing, when the aggregation cannot be undone; the rows are then
+     * aggregated again from the start.
+     */
+    public boolean remove(double[] values, int offset) {
+      return false;
+    }
+
+    /**
+     * Returns the value of every period. The array must not be modified.
+     */
+    public abstract double[] getValues();
+
+    /**
+     * Returns the lower edge of the band, or <code>null</code> for none.
+     */
+    public double[] getLows() {
+      return null;
+    }
+
+    /**
+     * Returns the upper edge of the band, or <code>null</code> for none.
+     */
+    public double[] getHighs() {
+      return null;
+    }
+  }
+
+  private static final class Sum extends Accumulator {
+    private final double[] _sums;
+    private final boolean _mean;
+    private int _count = 0;
+
+    private Sum(int periods, boolean mean) {
+      _sums = new double[periods];
+      _mean = mean;
+    }
+
+    @Override
+    public void add(double[] values, int offset) {
+      final double[] sums = _sums;
+      for (int i = 0; i < sums.length; i++) {
+        sums[i] += values[offset + i];
+      }
+      _count++;
+    }
+
+    @Override
+    public boolean remove(double[] values, int offset) {
+      final double[] sums = _sums;
+      for (int i = 0; i < sums.length; i++) {
+        sums[i] -= values[offset + i];
+      }
+      _count--;
+      return true;
+    }
+
+    @Override
+    public double[] getValues() {
+      if (!_mean || _count == 0)
+        return _sums;
+
+      final double[] means = new double[_sums.length];
+      for (int i = 0; i < means.length; i++) {
+        means[i] = _sums[i] / _count;
+      }
+      return means;
+    }
+  }
+
+  private static final class CountNonZero extends Accumulator {
+    private final double[] _counts;
+
+    private CountNonZero(int periods) {
+      _counts = new double[periods];
+    }
+
+    @Override
+    public void add(double[] values, int offset) {
+      final double[] counts = _counts;
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] += values[offset + i] != 0.0 ? 1.0 : 0.0;
+      }
+    }
+
+    @Override
+    public boolean remove(double[] values, int offset) {
+      final double[] counts = _counts;
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] -= values[offset + i] != 0.0 ? 1.0 : 0.0;
+      }
+      return true;
+    }
+
+    @Override
+    public double[] getValues() {
+      return _counts;
+    }
+  }
+
+  private static final class Extremes extends Accumulator {
+    private static final int MIN = 0;
+    private static final int MAX = 1;
+    private static final int ENVELOPE = 2;
+
+    private final int _mode;
+    private final double[] _lows;
+    private final double[] _highs;
+    private final double[] _sums;
+    private int _count = 0;
+
+    private Extremes(int periods, int mode) {
+      _mode = mode;
+      _lows = new double[periods];
+      _highs = new double[periods];
+      _sums = mode == ENVELOPE ? new double[periods] : null;
+    }
+
+    @Override
+    public void add(double[] values, int offset) {
+      final double[] lows = _lows;
+      final double[] highs = _highs;
+      if (_count++ == 0) {
+        System.arraycopy(values, offset, lows, 0, lows.length);
+        System.arraycopy(values, offset, highs, 0, highs.length);
+      } else {
+        for (int i = 0; i < lows.length; i++) {
+          lows[i] = Math.min(lows[i], values[offset + i]);
+          highs[i] = Math.max(highs[i], values[offset + i]);
+        }
+      }
+
+      if (_sums != null) {
+        final double[] sums = _sums;
+        for (int i = 0; i < sums.length; i++) {
+          sums[i] += values[offset + i];
+        }
+      }
+    }
+
+    @Override
+    public double[] getValues() {
+      switch (_mode) {
+        case MIN:
+          return _lows;
+
+        case MAX:
+          return _highs;
+
+        default:
+          final double[] means = new double[_sums.length];
+          for (int i = 0; i < means.length && _count > 0; i++) {
+            means[i] = _sums[i] / _count;
+          }
+          return means;
+      }
+    }
+
+    @Override
+    public double[] getLows() {
+      return _mode == ENVELOPE ? _lows : null;
+    }
+
+    @Override
+    public double[] getHighs() {
+      return _mode == ENVELOPE ? _highs : null;
+    }
+  }
+
+  private static final class Percentiles extends Accumulator {
+    private final int _periods;
+    private final double _low;
+    private final double _high;
+    private double[] _rows = new double[0];
+    private int _count = 0;
+    private double[][] _result;
+
+    private Percentiles(int periods, double low, double high) {
+      _periods = periods;
+      _low = low;
+      _high = high;
+    }
+
+    @Override
+    public void add(double[] values, int offset) {
+      final int length = (_count + 1) * _periods;
+      if (length > _rows.length)
+        _rows = Arrays.copyOf(_rows, Math.max(length, _rows.length * 2));
+
+      System.arraycopy(values, offset, _rows, _count * _periods, _periods);
+      _count++;
+      _result = null;
+    }
+
+    @Override
+    public double[] getValues() {
+      return result()[1];
+    }
+
+    @Override
+    public double[] getLows() {
+      return result()[0];
+    }
+
+    @Override
+    public double[] getHighs() {
+      return result()[2];
+    }
+
+    private double[][] result() {
+      if (_result != null)
+        return _result;
+
+      _result = new double[3][_periods];
+      if (_count == 0)
+        return _result;
+
+      final double[] column = new double[_count];
+      for (int p = 0; p < _periods; p++) {
+        for (int r = 0; r < _count; r++) {
+          column[r] = _rows[r * _periods + p];
+        }
+        Arrays.sort(column);
+        _result[0][p] = column[rank(_low)];
+        _result[1][p] = column[rank(0.5)];
+        _result[2][p] = column[rank(_high)];
+      }
+      return _result;
+    }
+
+    private int rank(double percentile) {
+      return Math.max(0, (int) Math.ceil(percentile * _count) - 1);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.viewer;
+
+/**
+ * Content provider that hands over all the values of an element at once,
+ * sparing the viewer a call per value.
+ */
+public interface TimeSeriesBulkContentProvider extends
+    TimeSeriesContentProvider {
+
+  /**
+   * Copies the values of the element, one per date, into the array starting
+   * at the offset.
+   */
+  void getValues(Object element, double[] values, int offset);
+
+}
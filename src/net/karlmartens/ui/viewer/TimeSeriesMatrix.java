@@ -0,0 +1,167 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.viewer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values of the elements shown by a time series viewer, kept as rows of a
+ * single primitive matrix. A row is loaded from the content provider the
+ * first time one of its values is needed and is kept until it is
+ * invalidated.
+ */
+final class TimeSeriesMatrix {
+
+  private final Map<Object, Integer> _rows = new HashMap<Object, Integer>();
+  private TimeSeriesContentProvider _provider;
+  private int _columnCount = 0;
+  private double[] _values = new double[0];
+  private int[] _free = new int[0];
+  private int _freeCount = 0;
+  private int _rowCount = 0;
+  private long _version = 0;
+
+  /**
+   * Sets where values are loaded from and how many there are per element,
+   * dropping every row when either changes.
+   */
+  void setContent(TimeSeriesContentProvider provider, int columnCount) {
+    if (provider == _provider && columnCount == _columnCount)
+      return;
+
+    _provider = provider;
+    _columnCount = columnCount;
+    clear();
+  }
+
+  int getColumnCount() {
+    return _columnCount;
+  }
+
+  /**
+   * Returns a number that changes whenever a value may have changed.
+   */
+  long getVersion() {
+    return _version;
+  }
+
+  double getValue(Object element, int index) {
+    if (index < 0 || index >= _columnCount)
+      return 0.0;
+
+    final int row = row(element);
+    if (row < 0)
+      return 0.0;
+
+    return _values[row * _columnCount + index];
+  }
+
+  /**
+   * Returns where the values of the element start in {@link #getValues()},
+   * loading them if needed, or -1 when there are none.
+   */
+  int getOffset(Object element) {
+    final int row = row(element);
+    if (row < 0)
+      return -1;
+
+    return row * _columnCount;
+  }
+
+  /**
+   * Returns the matrix, row after row. Loading a row may replace it.
+   */
+  double[] getValues() {
+    return _values;
+  }
+
+  /**
+   * Records a value written to the model, if the row of the element is
+   * loaded.
+   */
+  void setValue(Object element, int index, double value) {
+    final Integer row = _rows.get(element);
+    if (row == null || index < 0 || index >= _columnCount)
+      return;
+
+    _values[row * _columnCount + index] = value;
+    _version++;
+  }
+
+  boolean isLoaded(Object element) {
+    return _rows.containsKey(element);
+  }
+
+  void invalidate(Object element) {
+    final Integer row = _rows.remove(element);
+    if (row == null)
+      return;
+
+    _version++;
+
+    if (_freeCount == _free.length)
+      _free = Arrays.copyOf(_free, Math.max(4, _free.length * 2));
+    _free[_freeCount++] = row;
+  }
+
+  void clear() {
+    _version++;
+    _rows.clear();
+    _values = new double[0];
+    _freeCount = 0;
+    _rowCount = 0;
+  }
+
+  private int row(Object element) {
+    if (element == null || _provider == null || _columnCount == 0)
+      return -1;
+
+    final Integer existing = _rows.get(element);
+    if (existing != null)
+      return existing;
+
+    final int row;
+    if (_freeCount > 0) {
+      row = _free[--_freeCount];
+    } else {
+      row = _rowCount++;
+      final int length = _rowCount * _columnCount;
+      if (length > _values.length)
+        _values = Arrays.copyOf(_values, Math.max(length,
+            _values.length * 2));
+    }
+
+    load(element, row * _columnCount);
+    _rows.put(element, row);
+    return row;
+  }
+
+  private void load(Object element, int offset) {
+    if (_provider instanceof TimeSeriesBulkContentProvider) {
+      ((TimeSeriesBulkContentProvider) _provider).getValues(element, _values,
+          offset);
+      return;
+    }
+
+    for (int i = 0; i < _columnCount; i++) {
+      _values[offset + i] = _provider.getValue(element, i);
+    }
+  }
+}
@@ -20,6 +20,8 @@ package net.karlmartens.ui.viewer;
 import java.text.NumberFormat;
 import java.text.ParseException;
 
+import net.karlmartens.ui.util.DecimalFormatter;
+import net.karlmartens.ui.util.DoubleFormat;
 import net.karlmartens.ui.widget.TableItem;
 
 import org.eclipse.jface.viewers.CellEditor;
@@ -73,12 +75,8 @@ class TimeSeriesTableValueEditingSupport extends EditingSupport {
     if (editingSupport == null)
       return;
 
-    final TimeSeriesContentProvider cp = (TimeSeriesContentProvider) _viewer.getContentProvider();
-    if (cp == null)
-      return;
-
-    final double value = cp.getValue(cell.getElement(), computePeriodIndex(cell));
-    final NumberFormat format = getEditingNumberFormat(editingSupport);
+    final double value = _viewer.getValue(cell.getElement(), computePeriodIndex(cell));
+    final DoubleFormat format = getEditingNumberFormat(editingSupport);
     cellEditor.setValue(format.format(value));
   }
 
@@ -99,16 +97,17 @@ class TimeSeriesTableValueEditingSupport extends EditingSupport {
     }
 
     try {
-      final NumberFormat format = getEditingNumberFormat(editingSupport);
-      final Number n = format.parse(source);
-      update(cell, n.doubleValue());
+      final DoubleFormat format = getEditingNumberFormat(editingSupport);
+      update(cell, format.parse(source));
     } catch (ParseException e) {
       // ignore
     }
   }
 
   private void update(ViewerCell cell, double value) {
-    _viewer.getEditingSupport().setValue(cell.getElement(), computePeriodIndex(cell), value);
+    final int index = computePeriodIndex(cell);
+    _viewer.getEditingSupport().setValue(cell.getElement(), index, value);
+    _viewer.setValue(cell.getElement(), index, value);
     final TableItem item = (TableItem) cell.getItem();
     item.setText(cell.getColumnIndex(), _viewer.getNumberFormat().format(value));
     _viewer.getControl().redraw();
@@ -118,11 +117,11 @@ class TimeSeriesTableValueEditingSupport extends EditingSupport {
     return cell.getColumnIndex() - _viewer.getControl().getFixedColumnCount();
   }
 
-  private static NumberFormat getEditingNumberFormat(TimeSeriesEditingSupport editingSupport) {
-    NumberFormat format = editingSupport.getNumberFormat();
+  private static DoubleFormat getEditingNumberFormat(TimeSeriesEditingSupport editingSupport) {
+    final NumberFormat format = editingSupport.getNumberFormat();
     if (format != null)
-      return format;
+      return new NumberFormatAdapter(format);
 
-    return NumberFormat.getNumberInstance();
+    return DecimalFormatter.getInstance();
   }
 }
\ No newline at end of file
@@ -18,13 +18,16 @@
 package net.karlmartens.ui.viewer;
 
 import java.text.NumberFormat;
-import java.text.ParseException;
-import java.util.Arrays;
 import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
 
+import net.karlmartens.platform.function.Function;
 import net.karlmartens.platform.text.LocalDateFormat;
 import net.karlmartens.platform.util.ArraySupport;
 import net.karlmartens.platform.util.NullSafe;
+import net.karlmartens.ui.util.DecimalFormatter;
+import net.karlmartens.ui.util.DoubleFormat;
 import net.karlmartens.ui.widget.CellNavigationStrategy;
 import net.karlmartens.ui.widget.SparklineScrollBar;
 import net.karlmartens.ui.widget.Table;
@@ -48,7 +51,9 @@ import org.eclipse.swt.layout.FormLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Item;
 import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Widget;
 import org.joda.time.LocalDate;
 import org.joda.time.format.DateTimeFormat;
 
@@ -59,11 +64,17 @@ public final class TimeSeriesTableViewer extends TableViewer {
   }
 
   private final Table _table;
+  private final TimeSeriesMatrix _values = new TimeSeriesMatrix();
+  private TimeSeriesAggregation _aggregation = TimeSeriesAggregation.SUM;
+  private TimeSeriesAggregation.Accumulator _accumulator;
+  private Set<Object> _aggregated = new HashSet<Object>();
+  private int _aggregatedPeriods = -1;
+  private long _aggregatedVersion = -1;
   private SparklineScrollBar _scroll;
 
   private TimeSeriesEditingSupport _editingSupport;
   private LocalDateFormat _dateFormat = new LocalDateFormat(DateTimeFormat.shortDate());
-  private NumberFormat _numberFormat = NumberFormat.getNumberInstance();
+  private DoubleFormat _numberFormat = DecimalFormatter.getInstance();
   private ScrollDataMode _scrollDataMode = ScrollDataMode.FOCUS_CELL;
 
   private TimeSeriesTableViewer(Table table) {
@@ -92,14 +103,37 @@ public final class TimeSeriesTableViewer extends TableViewer {
     refresh(true);
   }
   
-  NumberFormat getNumberFormat() {
+  DoubleFormat getNumberFormat() {
     return _numberFormat;
   }
 
+  double getValue(Object element, int index) {
+    return _values.getValue(element, index);
+  }
+
+  void setValue(Object element, int index, double value) {
+    _values.setValue(element, index, value);
+  }
+
+  boolean isLoaded(Object element) {
+    return _values.isLoaded(element);
+  }
+
   public void setNumberFormat(NumberFormat format) {
     if (format == null)
       SWT.error(SWT.ERROR_NULL_ARGUMENT);
 
+    setNumberFormat(new NumberFormatAdapter(format));
+  }
+
+  /**
+   * Sets the format of the period values. {@link DecimalFormatter} formats
+   * without the allocations and locking of a {@link NumberFormat}.
+   */
+  public void setNumberFormat(DoubleFormat format) {
+    if (format == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
     _numberFormat = format;
     refresh(true);
   }
@@ -112,6 +146,20 @@ public final class TimeSeriesTableViewer extends TableViewer {
     refresh(false);
   }
 
+  /**
+   * Sets how the values of the rows picked by the scroll data mode are
+   * combined for the sparkline. The default is
+   * {@link TimeSeriesAggregation#SUM}.
+   */
+  public void setScrollAggregation(TimeSeriesAggregation aggregation) {
+    if (aggregation == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    _aggregation = aggregation;
+    _accumulator = null;
+    updateData();
+  }
+
   public static TimeSeriesTableViewer newTimeSeriesTable(Composite parent) {
     final Table table = new Table(parent, SWT.V_SCROLL | SWT.MULTI);
     table.setBackground(parent.getBackground());
@@ -161,6 +209,10 @@ public final class TimeSeriesTableViewer extends TableViewer {
       if (dates == null)
         dates = new LocalDate[0];
 
+      _values.setContent(cp, dates.length);
+      if (element == null || element == getRoot())
+        _values.clear();
+
       final int fixedColumnCount = _table.getFixedColumnCount();
       final int tsColumnCount = _table.getColumnCount() - fixedColumnCount;
       if (tsColumnCount > dates.length) {
@@ -179,9 +231,10 @@ public final class TimeSeriesTableViewer extends TableViewer {
           column.setMoveable(false);
           column.setHideable(false);
           column.setWidth(defaultWidth);
+          column.setTextProvider(new PeriodTextProvider(i));
 
           final TableViewerColumn viewerColumn = new TableViewerColumn(this, column);
-          viewerColumn.setLabelProvider(new PeriodLabelProvider(cp));
+          viewerColumn.setLabelProvider(new PeriodLabelProvider());
 
           if (_editingSupport != null) {
             viewerColumn.setEditingSupport(new TimeSeriesTableValueEditingSupport(this));
@@ -211,6 +264,29 @@ public final class TimeSeriesTableViewer extends TableViewer {
     super.internalRefresh(element, updateLabels);
   }
 
+  @Override
+  protected void inputChanged(Object input, Object oldInput) {
+    _values.clear();
+    super.inputChanged(input, oldInput);
+  }
+
+  @Override
+  protected void doUpdateItem(Widget widget, Object element, boolean fullMap) {
+    // The labels are about to be read again, so are the values
+    _values.invalidate(element);
+    super.doUpdateItem(widget, element, fullMap);
+  }
+
+  @Override
+  protected void disassociate(Item item) {
+    // Elements removed or replaced by remove or refresh must not keep their
+    // values loaded
+    final Object element = item.getData();
+    if (element != null)
+      _values.invalidate(element);
+    super.disassociate(item);
+  }
+
   @Override
   protected void assertContentProviderType(IContentProvider provider) {
     Assert.isTrue(provider instanceof TimeSeriesContentProvider);
@@ -254,7 +330,7 @@ public final class TimeSeriesTableViewer extends TableViewer {
 
   }
 
-  private int _scrollEventId = 0;
+  private final ScrollCoordinator _scrollCoordinator = new ScrollCoordinator();
 
   private void handleSelection(Event e) {
     final Object source = e.widget;
@@ -263,29 +339,7 @@ public final class TimeSeriesTableViewer extends TableViewer {
     }
     
     if (source == _scroll) {
-      final int id = ++_scrollEventId;
-      final Runnable runnable = new Runnable() {
-        @Override
-        public void run() {
-          if (id != _scrollEventId)
-            return;
-
-          final Rectangle rect = _table.getVisibleScrollableCells();
-          final Point pt = new Point(rect.x, rect.y);
-          pt.x = _table.getFixedColumnCount() + _scroll.getSelection();
-          _table.scroll(pt);
-          
-          final TableColumn column = _table.getColumn(pt.x);
-          _scroll.setLabel(column.getText());
-        }
-      };
-
-      final Display display = _table.getDisplay();
-      if (_scrollEventId % 7 == 0) {
-        display.syncExec(runnable);
-      } else {
-        display.asyncExec(runnable);
-      }
+      _scrollCoordinator.request();
     }
   }
 
@@ -348,16 +402,15 @@ public final class TimeSeriesTableViewer extends TableViewer {
     final int max = _scroll.getMaximum();
     
     final BitSet selected = new BitSet();
-    for (Point pt : _table.getCellSelections()) {
-      final int index = pt.x - fixedColumnCount;
+    for (int column : _table.getCellSelection().getColumns()) {
+      final int index = column - fixedColumnCount;
       if (index < min || index > max)
         continue;
       
       selected.set(index);
-
-      final int[] indices = ArraySupport.toArray(selected);
-      _scroll.setHighlights(indices);
     }
+
+    _scroll.setHighlights(ArraySupport.toArray(selected));
   }
   
   private void updateData() {
@@ -380,48 +433,154 @@ public final class TimeSeriesTableViewer extends TableViewer {
         indices = new int[] {};
     }
     
-    final int fixedColumnCount = _table.getFixedColumnCount();
-    final double[] data = new double[_scroll.getMaximum() - _scroll.getMinimum() + 1];
-    Arrays.fill(data, 0.0);
+    final Set<Object> elements = new HashSet<Object>();
     for (int index : indices) {
-      final TableItem item = _table.getItem(index);
-      for (int j = 0; j < data.length; j++) {
-        try {
-          final String value = item.getText(fixedColumnCount + j);
-          if (value == null)
-            continue;
-          
-          data[j] += _numberFormat.parse(value).doubleValue();
-        } catch (ParseException e) {
-          // ignore
-        }
+      final Object element = _table.getItem(index).getData();
+      if (element != null)
+        elements.add(element);
+    }
+
+    // The aggregate follows the rows entering and leaving the selection,
+    // unless the values changed since or most rows are new anyway
+    final int periods = _values.getColumnCount();
+    if (_accumulator == null || _aggregatedPeriods != periods
+        || _aggregatedVersion != _values.getVersion()
+        || countDifference(_aggregated, elements) >= elements.size()
+        || !updateAggregate(elements)) {
+      _accumulator = _aggregation.start(periods);
+      for (Object element : elements) {
+        final int offset = _values.getOffset(element);
+        if (offset >= 0)
+          _accumulator.add(_values.getValues(), offset);
       }
     }
-    _scroll.setDataPoints(data);
+
+    _aggregated = elements;
+    _aggregatedPeriods = periods;
+    _aggregatedVersion = _values.getVersion();
+
+    final int length = _scroll.getMaximum() - _scroll.getMinimum() + 1;
+    _scroll.setDataPoints(fit(_accumulator.getValues(), length));
+    final double[] lows = _accumulator.getLows();
+    final double[] highs = _accumulator.getHighs();
+    if (lows != null && highs != null) {
+      _scroll.setBand(fit(lows, length), fit(highs, length));
+    } else {
+      _scroll.clearBand();
+    }
   }
 
-  private final class PeriodLabelProvider extends CellLabelProvider {
+  private boolean updateAggregate(Set<Object> elements) {
+    for (Object element : _aggregated) {
+      if (elements.contains(element))
+        continue;
+
+      final int offset = _values.getOffset(element);
+      if (offset >= 0 && !_accumulator.remove(_values.getValues(), offset))
+        return false;
+    }
 
-    private final TimeSeriesContentProvider _base;
+    for (Object element : elements) {
+      if (_aggregated.contains(element))
+        continue;
 
-    public PeriodLabelProvider(TimeSeriesContentProvider base) {
-      _base = base;
+      final int offset = _values.getOffset(element);
+      if (offset >= 0)
+        _accumulator.add(_values.getValues(), offset);
     }
+    return true;
+  }
+
+  private static double[] fit(double[] values, int length) {
+    if (values.length == length)
+      return values;
+
+    final double[] fitted = new double[length];
+    System.arraycopy(values, 0, fitted, 0, Math.min(length, values.length));
+    return fitted;
+  }
+
+  private static int countDifference(Set<Object> previous, Set<Object> current) {
+    int count = 0;
+    for (Object element : previous) {
+      if (!current.contains(element))
+        count++;
+    }
+    for (Object element : current) {
+      if (!previous.contains(element))
+        count++;
+    }
+    return count;
+  }
+
+  private final class PeriodLabelProvider extends CellLabelProvider {
 
     @Override
     public void update(ViewerCell cell) {
-      final int index = cell.getColumnIndex();
-      final double value = _base.getValue(cell.getElement(), index - _table.getFixedColumnCount());
-      
-      final String string;
-      if (value == 0.0) {
-        string = "";
+      // The text is formatted when the cell is painted, see PeriodTextProvider
+      final TableItem item = ((TableItem) cell.getItem());
+      item.clearText(cell.getColumnIndex());
+    }
+  }
+
+  private final class PeriodTextProvider implements Function<TableItem, String> {
+
+    private final int _index;
+
+    public PeriodTextProvider(int index) {
+      _index = index;
+    }
+
+    @Override
+    public String apply(TableItem item) {
+      final double value = _values.getValue(item.getData(), _index);
+      if (value == 0.0)
+        return "";
+
+      return _numberFormat.format(value);
+    }
+  }
+
+  /**
+   * Scrolls the table to the thumb of the scroll bar at most once per frame.
+   * Selection events arriving in between only mark a scroll as pending, and
+   * the frame reads the thumb when it runs, so dragging the thumb never queues
+   * stale positions nor blocks the event thread.
+   */
+  private final class ScrollCoordinator implements Runnable {
+
+    private static final long FRAME_NANOS = 16000000L;
+
+    private boolean _scheduled = false;
+    private long _lastFrame = System.nanoTime() - FRAME_NANOS;
+
+    void request() {
+      if (_scheduled)
+        return;
+
+      _scheduled = true;
+      final Display display = _table.getDisplay();
+      final long wait = FRAME_NANOS - (System.nanoTime() - _lastFrame);
+      if (wait <= 0) {
+        display.asyncExec(this);
       } else {
-        string = _numberFormat.format(value);
+        display.timerExec((int) Math.max(1, wait / 1000000L), this);
       }
-      
-      final TableItem item = ((TableItem) cell.getItem()); 
-      item.setText(index, string);
+    }
+
+    @Override
+    public void run() {
+      _scheduled = false;
+      if (_table.isDisposed() || _scroll == null || _scroll.isDisposed())
+        return;
+
+      _lastFrame = System.nanoTime();
+      final int index = _table.getFixedColumnCount() + _scroll.getSelection();
+      if (index >= _table.getColumnCount())
+        return;
+
+      _table.scrollToColumn(index);
+      _scroll.setLabel(_table.getColumn(index).getText());
     }
   }
 
@@ -17,7 +17,7 @@
  */
 package net.karlmartens.ui.widget;
 
-import net.karlmartens.platform.util.ArraySupport;
+import static net.karlmartens.ui.widget.CellStore.ROW;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
@@ -29,33 +29,45 @@ import org.eclipse.swt.widgets.Item;
 abstract class AbstractTableItem extends Item {
 
   private Control _parent;
-  protected String[] _strings;
-  protected Image[] _images;
-  protected Integer _style;
-  protected Integer[] _cellStyles;
-  protected Color _background;
-  protected Color[] _cellBackgrounds;
-  protected Color _foreground;
-  protected Color[] _cellForegrounds;
-  protected Font _font;
-  protected Font[] _cellFonts;
-
-  AbstractTableItem(Control parent, int style) {
+  private CellStore _store;
+  private final int _row;
+
+  AbstractTableItem(Control parent, int style, CellStore store) {
     super(parent, style);
     _parent = parent;
+    _store = store;
+    _row = store.allocate();
   }
 
   protected abstract int doGetColumnCount();
 
-  public String getText(int index) {
+  final int getStoreRow() {
+    return _row;
+  }
+
+  @Override
+  public String getText() {
     checkWidget();
-    if (index == 0)
-      return getText();
+    return getText(0);
+  }
 
-    if (_strings == null || index < 0 || index >= _strings.length)
+  public String getText(int index) {
+    checkWidget();
+    checkData();
+    if (index < 0)
       return null;
 
-    return _strings[index];
+    String text = _store.getText(_row, index);
+    if (text == null) {
+      text = computeText(index);
+      if (text != null)
+        _store.fillText(_row, index, text);
+    }
+
+    if (text == null && index == 0)
+      return "";
+
+    return text;
   }
 
   public void setText(String text) {
@@ -81,57 +93,64 @@ abstract class AbstractTableItem extends Item {
     if (text == null)
       SWT.error(SWT.ERROR_NULL_ARGUMENT);
 
-    if (index == 0) {
-      if (text.equals(getText()))
-        return false;
-
-      super.setText(text);
-    }
-
     final int count = Math.max(1, doGetColumnCount());
     if (index < 0 || index >= count)
       return false;
 
-    if (_strings == null && index != 0) {
-      _strings = new String[count];
-      _strings[0] = super.getText();
-    }
+    if (text.equals(getText(index)))
+      return false;
 
-    if (_strings != null) {
-      if (text.equals(_strings[index]))
-        return false;
-      _strings[index] = text;
-    }
-    _parent.redraw();
+    _store.setText(_row, index, text);
+    redraw(index);
+    return true;
+  }
+
+  /**
+   * Drops the text of the cell. A cell without text asks the text provider of
+   * its column for it again the next time it is needed.
+   */
+  public boolean clearText(int index) {
+    checkWidget();
+    if (index < 0 || _store.getText(_row, index) == null)
+      return false;
+
+    _store.setText(_row, index, null);
+    redraw(index);
     return true;
   }
 
   public int getStyle() {
     checkWidget();
-    if (_style == null)
+    checkData();
+    final Integer style = _store.getStyle(_row, ROW);
+    if (style == null)
       return super.getStyle();
 
-    return _style;
+    return style;
   }
 
   public int getStyle(int index) {
     checkWidget();
+    checkData();
+    if (index < 0)
+      return getStyle();
 
-    if (_cellStyles == null || index < 0 || index >= _cellStyles.length
-        || _cellStyles[index] == null)
+    final Integer style = _store.getStyle(_row, index);
+    if (style == null)
       return getStyle();
 
-    return _cellStyles[index];
+    return style;
   }
 
   public void setStyle(int style) {
     checkWidget();
 
-    if (_style != null && _style.intValue() == style)
+    final Integer current = _store.getStyle(_row, ROW);
+    if (current != null && current.intValue() == style)
       return;
 
-    _style = style;
-    _parent.redraw();
+    _store.setStyle(_row, ROW, style);
+    redraw(ROW);
   }
 
   public void setStyle(Integer[] styles) {
@@ -154,28 +173,30 @@ abstract class AbstractTableItem extends Item {
     if (index < 0 || index >= count)
       return;
 
-    if (_cellStyles == null) {
-      _cellStyles = new Integer[count];
-    }
-
-    if (_cellStyles[index] == style)
+    final Integer current = _store.getStyle(_row, index);
+    if (current == style)
       return;
 
-    if (style != null && style.equals(_cellStyles[index]))
+    if (style != null && style.equals(current))
       return;
 
-    _cellStyles[index] = style;
-    _parent.redraw();
+    _store.setStyle(_row, index, style);
+    redraw(index);
+  }
+
+  @Override
+  public Image getImage() {
+    checkWidget();
+    return getImage(0);
   }
 
   public Image getImage(int index) {
     checkWidget();
-    if (index == 0)
-      return getImage();
-    if (_images == null || index < 0 || index >= _images.length)
+    checkData();
+    if (index < 0)
       return null;
 
-    return _images[index];
+    return _store.getImage(_row, index);
   }
 
   @Override
@@ -202,47 +223,43 @@ abstract class AbstractTableItem extends Item {
     if (image != null && image.isDisposed())
       SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 
-    if (index == 0) {
-      if (image != null && image.equals(getImage()))
-        return;
-
-      super.setImage(image);
-    }
-
     final int count = Math.max(1, doGetColumnCount());
     if (index < 0 || index >= count)
       return;
 
-    if (_images == null && index != 0) {
-      _images = new Image[count];
-      _images[0] = super.getImage();
-    }
+    final Image current = _store.getImage(_row, index);
+    if (current == image)
+      return;
 
-    if (_images != null) {
-      if (image != null && image.equals(_images[index]))
-        return;
-      _images[index] = image;
-    }
-    _parent.redraw();
+    if (image != null && image.equals(current))
+      return;
+
+    _store.setImage(_row, index, image);
+    redraw(index);
   }
 
   public Color getBackground() {
     checkWidget();
-    if (_background == null) {
+    checkData();
+    final Color color = _store.getBackground(_row, ROW);
+    if (color == null) {
       return _parent.getBackground();
     }
 
-    return _background;
+    return color;
   }
 
   public Color getBackground(int index) {
     checkWidget();
+    checkData();
+    if (index < 0)
+      return getBackground();
 
-    if (_cellBackgrounds == null || index < 0
-        || index >= _cellBackgrounds.length || _cellBackgrounds[index] == null)
+    final Color color = _store.getBackground(_row, index);
+    if (color == null)
       return getBackground();
 
-    return _cellBackgrounds[index];
+    return color;
   }
 
   public void setBackground(Color color) {
@@ -250,14 +267,7 @@ abstract class AbstractTableItem extends Item {
     if (color != null && color.isDisposed())
       SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 
-    if (color == _background)
-      return;
-
-    if (color != null && color.equals(_background))
-      return;
-
-    _background = color;
-    _parent.redraw();
+    doSetBackground(ROW, color);
   }
 
   public void setBackground(int index, Color color) {
@@ -269,36 +279,42 @@ abstract class AbstractTableItem extends Item {
     if (index < 0 || index >= count)
       return;
 
-    if (_cellBackgrounds == null) {
-      _cellBackgrounds = new Color[count];
-    }
+    doSetBackground(index, color);
+  }
 
-    if (_cellBackgrounds[index] == color)
+  private void doSetBackground(int index, Color color) {
+    final Color current = _store.getBackground(_row, index);
+    if (current == color)
       return;
 
-    if (color != null && color.equals(_cellBackgrounds[index]))
+    if (color != null && color.equals(current))
       return;
 
-    _cellBackgrounds[index] = color;
-    _parent.redraw();
+    _store.setBackground(_row, index, color);
+    redraw(index);
   }
 
   public Color getForeground() {
     checkWidget();
-    if (_foreground == null)
+    checkData();
+    final Color color = _store.getForeground(_row, ROW);
+    if (color == null)
       return _parent.getForeground();
 
-    return _foreground;
+    return color;
   }
 
   public Color getForeground(int index) {
     checkWidget();
+    checkData();
+    if (index < 0)
+      return getForeground();
 
-    if (_cellForegrounds == null || index < 0
-        || index >= _cellForegrounds.length || _cellForegrounds[index] == null)
+    final Color color = _store.getForeground(_row, index);
+    if (color == null)
       return getForeground();
 
-    return _cellForegrounds[index];
+    return color;
   }
 
   public void setForeground(Color color) {
@@ -306,14 +322,7 @@ abstract class AbstractTableItem extends Item {
     if (color != null && color.isDisposed())
       SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 
-    if (color == _foreground)
-      return;
-
-    if (color != null && color.equals(_foreground))
-      return;
-
-    _foreground = color;
-    _parent.redraw();
+    doSetForeground(ROW, color);
   }
 
   public void setForeground(int index, Color color) {
@@ -325,36 +334,42 @@ abstract class AbstractTableItem extends Item {
     if (index < 0 || index >= count)
       return;
 
-    if (_cellForegrounds == null) {
-      _cellForegrounds = new Color[count];
-    }
+    doSetForeground(index, color);
+  }
 
-    if (_cellForegrounds[index] == color)
+  private void doSetForeground(int index, Color color) {
+    final Color current = _store.getForeground(_row, index);
+    if (current == color)
       return;
 
-    if (color != null && color.equals(_cellForegrounds[index]))
+    if (color != null && color.equals(current))
       return;
 
-    _cellForegrounds[index] = color;
-    _parent.redraw();
+    _store.setForeground(_row, index, color);
+    redraw(index);
   }
 
   public Font getFont() {
     checkWidget();
-    if (_font == null)
+    checkData();
+    final Font font = _store.getFont(_row, ROW);
+    if (font == null)
       return _parent.getFont();
 
-    return _font;
+    return font;
   }
 
   public Font getFont(int index) {
     checkWidget();
+    checkData();
+    if (index < 0)
+      return getFont();
 
-    if (_cellFonts == null || index < 0 || index >= _cellFonts.length
-        || _cellFonts[index] == null)
+    final Font font = _store.getFont(_row, index);
+    if (font == null)
       return getFont();
 
-    return _cellFonts[index];
+    return font;
   }
 
   public void setFont(Font font) {
@@ -362,14 +377,7 @@ abstract class AbstractTableItem extends Item {
     if (font != null && font.isDisposed())
       SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 
-    if (_font == font)
-      return;
-
-    if (font != null && font.equals(_font))
-      return;
-
-    _font = font;
-    _parent.redraw();
+    doSetFont(ROW, font);
   }
 
   public void setFont(int index, Font font) {
@@ -381,53 +389,51 @@ abstract class AbstractTableItem extends Item {
     if (index < 0 || index >= count)
       return;
 
-    if (_cellFonts == null)
-      _cellFonts = new Font[count];
+    doSetFont(index, font);
+  }
 
-    if (_cellFonts[index] == font)
+  private void doSetFont(int index, Font font) {
+    final Font current = _store.getFont(_row, index);
+    if (current == font)
       return;
 
-    if (font != null && font.equals(_cellFonts[index]))
+    if (font != null && font.equals(current))
       return;
 
-    _cellFonts[index] = font;
-    _parent.redraw();
+    _store.setFont(_row, index, font);
+    redraw(index);
   }
 
-  void clear() {
-    super.setText("");
-    super.setImage(null);
-    _strings = null;
-    _images = null;
-    _style = null;
-    _cellStyles = null;
-    _font = null;
-    _cellFonts = null;
-    _background = null;
-    _cellBackgrounds = null;
-    _foreground = null;
-    _cellForegrounds = null;
+  void checkData() {
+    // Subclasses may populate their cells on demand
   }
 
-  void release() {
-    _parent = null;
-    clear();
+  /**
+   * Returns the text of a cell that has none, or <code>null</code>.
+   */
+  String computeText(int index) {
+    return null;
   }
 
-  void swapColumns(int firstIndex, int secondIndex) {
-    ArraySupport.swap(_strings, firstIndex, secondIndex);
-    ArraySupport.swap(_images, firstIndex, secondIndex);
+  /**
+   * Repaints the cell at <code>index</code>, or the whole row for
+   * {@link CellStore#ROW}.
+   */
+  void redraw(int index) {
+    _parent.redraw();
+  }
 
-    if (_cellStyles != null)
-      ArraySupport.swap(_cellStyles, firstIndex, secondIndex);
+  Color getItemBackground() {
+    return _store.getBackground(_row, ROW);
+  }
 
-    ArraySupport.swap(_cellFonts, firstIndex, secondIndex);
-    ArraySupport.swap(_cellBackgrounds, firstIndex, secondIndex);
-    ArraySupport.swap(_cellForegrounds, firstIndex, secondIndex);
+  void clear() {
+    _store.clear(_row);
+  }
 
-    if (firstIndex == 0 || secondIndex == 0) {
-      setText(_strings[0]);
-      setImage(_images[0]);
-    }
+  void release() {
+    _parent = null;
+    _store.release(_row);
+    _store = null;
   }
 }
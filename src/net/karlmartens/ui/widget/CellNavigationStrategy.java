@@ -136,6 +136,7 @@ public final class CellNavigationStrategy {
     final Point pt = new Point(currentSelectedCell.x, currentSelectedCell.y);
     final int columnCount = table.getColumnCount();
     final int itemCount = table.getItemCount();
+    final int viewItemCount = table.getViewItemCount();
     final int minY = table.getFixedHeaderRowCount();
     final int minX = table.getFixedHeaderColumnCount();
     if (delta.x == 0) {
@@ -149,15 +150,19 @@ public final class CellNavigationStrategy {
       if (!column.isVisible())
         return null;
 
-      for (;;) {
-        pt.y += delta.y;
-        if (pt.y < minY || pt.y >= itemCount)
-          return null;
+      final int view = table.getViewIndex(pt.y);
+      if (view < 0)
+        return null;
 
-        final TableItem item = table.getItem(pt.y);
-        if (item.isVisible())
-          return pt;
-      }
+      final int next = view + delta.y;
+      if (next < 0 || next >= viewItemCount)
+        return null;
+
+      pt.y = table.getModelIndex(next);
+      if (pt.y < minY)
+        return null;
+
+      return pt;
     }
 
     if (pt.y < minY || pt.y >= itemCount)
@@ -180,39 +185,32 @@ public final class CellNavigationStrategy {
 
   private Point doPageUp(Table table, Point currentSelectedCell, Event event) {
     final int numFixedRows = table.getFixedRowCount();
-    if (numFixedRows >= table.getItemCount())
+    final int viewItemCount = table.getViewItemCount();
+    if (numFixedRows >= viewItemCount)
       return null;
 
-    final int index = currentSelectedCell.y
+    final int index = toViewIndex(table, currentSelectedCell.y)
         - table.getVisibleScrollableCells().height - 1;
-    int y = Math.max(numFixedRows, index);
-    while (!table.getItem(y).isVisible() && y < table.getItemCount()) {
-      y++;
-    }
-
-    if (y >= table.getItemCount())
+    final int y = Math.max(numFixedRows, index);
+    if (y >= viewItemCount)
       return null;
 
-    return new Point(currentSelectedCell.x, y);
+    return new Point(currentSelectedCell.x, table.getModelIndex(y));
   }
 
   private Point doPageDown(Table table, Point currentSelectedCell, Event event) {
     final int numFixedRows = table.getFixedRowCount();
-    if (numFixedRows >= table.getItemCount())
+    final int viewItemCount = table.getViewItemCount();
+    if (numFixedRows >= viewItemCount)
       return null;
 
-    final int index = currentSelectedCell.y
+    final int index = toViewIndex(table, currentSelectedCell.y)
         + table.getVisibleScrollableCells().height - 1;
-    final int maxIndex = table.getItemCount() - 1;
-    int y = Math.min(index, maxIndex);
-    while (!table.getItem(y).isVisible() && y >= 0) {
-      y--;
-    }
-
+    final int y = Math.min(index, viewItemCount - 1);
     if (y < 0)
       return null;
 
-    return new Point(currentSelectedCell.x, y);
+    return new Point(currentSelectedCell.x, table.getModelIndex(y));
   }
 
   private Point doPageLeft(Table table, Point currentSelectedCell, Event event) {
@@ -294,4 +292,12 @@ public final class CellNavigationStrategy {
 
     return null;
   }
+
+  private int toViewIndex(Table table, int index) {
+    final int view = table.getViewIndex(index);
+    if (view < 0)
+      return -view - 1;
+
+    return view;
+  }
 }
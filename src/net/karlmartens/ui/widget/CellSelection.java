@@ -0,0 +1,564 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import net.karlmartens.platform.util.ArraySupport;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
+
+/**
+ * A set of table cells stored as a union of disjoint rectangles, where
+ * <code>x</code> is the column index and <code>y</code> the row index. Added
+ * ranges are joined with the ranges they extend into a larger rectangle, so
+ * selecting a block cell by cell still ends up as a single range. The ranges
+ * are kept ordered by their top row, so that adding a range only visits the
+ * ranges it may overlap or extend.
+ */
+public final class CellSelection implements Iterable<Point> {
+
+  private static final Comparator<Point> ROW_MAJOR = new Comparator<Point>() {
+    @Override
+    public int compare(Point o1, Point o2) {
+      if (o1.y != o2.y)
+        return o1.y < o2.y ? -1 : 1;
+
+      return o1.x < o2.x ? -1 : (o1.x == o2.x ? 0 : 1);
+    }
+  };
+
+  // Orders ranges by top row, then by left column
+  private static final Comparator<Rectangle> TOP_DOWN = new Comparator<Rectangle>() {
+    @Override
+    public int compare(Rectangle o1, Rectangle o2) {
+      if (o1.y != o2.y)
+        return CellSelection.compare(o1.y, o2.y);
+
+      return CellSelection.compare(o1.x, o2.x);
+    }
+  };
+
+  // Groups ranges spanning the same columns, top to bottom
+  private static final Comparator<Rectangle> BY_COLUMNS = new Comparator<Rectangle>() {
+    @Override
+    public int compare(Rectangle o1, Rectangle o2) {
+      if (o1.x != o2.x)
+        return CellSelection.compare(o1.x, o2.x);
+
+      if (o1.width != o2.width)
+        return CellSelection.compare(o1.width, o2.width);
+
+      return CellSelection.compare(o1.y, o2.y);
+    }
+  };
+
+  // Groups ranges spanning the same rows, left to right
+  private static final Comparator<Rectangle> BY_ROWS = new Comparator<Rectangle>() {
+    @Override
+    public int compare(Rectangle o1, Rectangle o2) {
+      if (o1.y != o2.y)
+        return CellSelection.compare(o1.y, o2.y);
+
+      if (o1.height != o2.height)
+        return CellSelection.compare(o1.height, o2.height);
+
+      return CellSelection.compare(o1.x, o2.x);
+    }
+  };
+
+  private final List<Rectangle> _ranges = new ArrayList<Rectangle>();
+
+  // The furthest bottom edge reached by the ranges up to each position, valid
+  // before _reachFrom, used to stop scanning upwards for overlapping ranges
+  private int[] _reach = new int[0];
+  private int _reachFrom = 0;
+
+  public CellSelection() {
+    // Empty selection
+  }
+
+  public CellSelection(CellSelection selection) {
+    if (selection == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    for (Rectangle range : selection._ranges) {
+      _ranges.add(copy(range));
+    }
+  }
+
+  public static CellSelection of(Point[] cells) {
+    if (cells == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    final Point[] sorted = Arrays.copyOf(cells, cells.length);
+    Arrays.sort(sorted, ROW_MAJOR);
+
+    // Runs of adjacent cells in a row extend the range of the same columns
+    // ending on the row above, if there is one
+    final CellSelection selection = new CellSelection();
+    Map<Long, Rectangle> above = new HashMap<Long, Rectangle>();
+    int i = 0;
+    while (i < sorted.length) {
+      final int row = sorted[i].y;
+      final Map<Long, Rectangle> current = new HashMap<Long, Rectangle>();
+      while (i < sorted.length && sorted[i].y == row) {
+        final int x = sorted[i].x;
+        int end = x + 1;
+        for (i++; i < sorted.length && sorted[i].y == row
+            && sorted[i].x <= end; i++) {
+          end = Math.max(end, sorted[i].x + 1);
+        }
+
+        final Long key = Long.valueOf(((long) x << 32) | (end - x));
+        Rectangle range = above.get(key);
+        if (range != null && range.y + range.height == row) {
+          range.height++;
+        } else {
+          range = new Rectangle(x, row, end - x, 1);
+          selection._ranges.add(range);
+        }
+        current.put(key, range);
+      }
+      above = current;
+    }
+    selection.sortRanges();
+    return selection;
+  }
+
+  /**
+   * Builds a selection from ranges known to be disjoint, joining the ranges
+   * that extend one another in a single sweep down the columns and one
+   * across the rows.
+   */
+  static CellSelection ofDisjoint(List<Rectangle> ranges) {
+    final List<Rectangle> sorted = new ArrayList<Rectangle>(ranges.size());
+    for (Rectangle range : ranges) {
+      if (range.width > 0 && range.height > 0)
+        sorted.add(copy(range));
+    }
+
+    Collections.sort(sorted, BY_COLUMNS);
+    final List<Rectangle> columns = new ArrayList<Rectangle>(sorted.size());
+    Rectangle last = null;
+    for (Rectangle range : sorted) {
+      if (last != null && last.x == range.x && last.width == range.width
+          && last.y + last.height == range.y) {
+        last.height += range.height;
+      } else {
+        last = range;
+        columns.add(range);
+      }
+    }
+
+    Collections.sort(columns, BY_ROWS);
+    final CellSelection selection = new CellSelection();
+    last = null;
+    for (Rectangle range : columns) {
+      if (last != null && last.y == range.y && last.height == range.height
+          && last.x + last.width == range.x) {
+        last.width += range.width;
+      } else {
+        last = range;
+        selection._ranges.add(range);
+      }
+    }
+    selection.sortRanges();
+    return selection;
+  }
+
+  public boolean isEmpty() {
+    return _ranges.isEmpty();
+  }
+
+  public void clear() {
+    _ranges.clear();
+    _reachFrom = 0;
+  }
+
+  public void add(int column, int row) {
+    add(new Rectangle(column, row, 1, 1));
+  }
+
+  public void add(Rectangle range) {
+    if (range == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    if (range.width <= 0 || range.height <= 0)
+      return;
+
+    List<Rectangle> pieces = new ArrayList<Rectangle>();
+    pieces.add(copy(range));
+    updateReach();
+    for (int i = floor(range.y + range.height - 1); i >= 0
+        && _reach[i] > range.y; i--) {
+      final Rectangle existing = _ranges.get(i);
+      if (!existing.intersects(range))
+        continue;
+
+      final List<Rectangle> remaining = new ArrayList<Rectangle>();
+      for (Rectangle piece : pieces) {
+        subtract(piece, existing, remaining);
+      }
+      pieces = remaining;
+      if (pieces.isEmpty())
+        return;
+    }
+
+    for (Rectangle piece : pieces) {
+      join(piece);
+    }
+  }
+
+  public void add(CellSelection selection) {
+    if (selection == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    if (_ranges.isEmpty()) {
+      // Ranges of a selection are already disjoint
+      for (Rectangle range : selection._ranges) {
+        _ranges.add(copy(range));
+      }
+      _reachFrom = 0;
+      return;
+    }
+
+    for (Rectangle range : selection._ranges) {
+      add(range);
+    }
+  }
+
+  public void remove(Rectangle range) {
+    if (range == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    final List<Rectangle> remaining = new ArrayList<Rectangle>();
+    for (Rectangle existing : _ranges) {
+      subtract(existing, range, remaining);
+    }
+    _ranges.clear();
+    _ranges.addAll(remaining);
+    sortRanges();
+  }
+
+  public void retain(Rectangle range) {
+    if (range == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    final List<Rectangle> remaining = new ArrayList<Rectangle>();
+    for (Rectangle existing : _ranges) {
+      final Rectangle r = existing.intersection(range);
+      if (r.width > 0 && r.height > 0)
+        remaining.add(r);
+    }
+    _ranges.clear();
+    _ranges.addAll(remaining);
+    sortRanges();
+  }
+
+  /**
+   * Follows a row moved from one index to another, shifting the rows in
+   * between by one. Returns whether any selected cell moved.
+   */
+  boolean moveRow(int from, int to) {
+    if (from == to)
+      return false;
+
+    final int low = Math.min(from, to);
+    final int high = Math.max(from, to) + 1;
+    final int step = from < to ? -1 : 1;
+    final List<Rectangle> ranges = new ArrayList<Rectangle>();
+    boolean moved = false;
+    for (Rectangle r : _ranges) {
+      final int bottom = r.y + r.height;
+      final int top = Math.max(r.y, low);
+      final int end = Math.min(bottom, high);
+      if (top >= end) {
+        ranges.add(r);
+        continue;
+      }
+
+      moved = true;
+      if (r.y < low)
+        ranges.add(new Rectangle(r.x, r.y, r.width, low - r.y));
+      if (bottom > high)
+        ranges.add(new Rectangle(r.x, high, r.width, bottom - high));
+
+      if (from < top || from >= end) {
+        ranges.add(new Rectangle(r.x, top + step, r.width, end - top));
+        continue;
+      }
+
+      ranges.add(new Rectangle(r.x, to, r.width, 1));
+      if (from > top)
+        ranges.add(new Rectangle(r.x, top + step, r.width, from - top));
+      if (end > from + 1)
+        ranges.add(new Rectangle(r.x, from + 1 + step, r.width, end - from
+            - 1));
+    }
+
+    if (moved) {
+      _ranges.clear();
+      _ranges.addAll(ranges);
+      sortRanges();
+    }
+    return moved;
+  }
+
+  public boolean contains(int column, int row) {
+    updateReach();
+    for (int i = floor(row); i >= 0 && _reach[i] > row; i--) {
+      if (_ranges.get(i).contains(column, row))
+        return true;
+    }
+    return false;
+  }
+
+  public boolean containsRow(int row) {
+    updateReach();
+    final int i = floor(row);
+    return i >= 0 && _reach[i] > row;
+  }
+
+  public Rectangle[] getRanges() {
+    final Rectangle[] ranges = new Rectangle[_ranges.size()];
+    for (int i = 0; i < ranges.length; i++) {
+      ranges[i] = copy(_ranges.get(i));
+    }
+    return ranges;
+  }
+
+  public Rectangle getBounds() {
+    if (_ranges.isEmpty())
+      return new Rectangle(0, 0, 0, 0);
+
+    Rectangle bounds = copy(_ranges.get(0));
+    for (Rectangle range : _ranges) {
+      bounds = bounds.union(range);
+    }
+    return bounds;
+  }
+
+  public int getCellCount() {
+    int count = 0;
+    for (Rectangle range : _ranges) {
+      count += range.width * range.height;
+    }
+    return count;
+  }
+
+  public int[] getRows() {
+    final BitSet rows = new BitSet();
+    for (Rectangle range : _ranges) {
+      rows.set(range.y, range.y + range.height);
+    }
+    return ArraySupport.toArray(rows);
+  }
+
+  public int[] getColumns() {
+    final BitSet columns = new BitSet();
+    for (Rectangle range : _ranges) {
+      columns.set(range.x, range.x + range.width);
+    }
+    return ArraySupport.toArray(columns);
+  }
+
+  /**
+   * Expands the selection into individual cells. Prefer {@link #getRanges()}
+   * or {@link #iterator()} for large selections.
+   */
+  public Point[] toArray() {
+    final Point[] cells = new Point[getCellCount()];
+    int i = 0;
+    for (Point cell : this) {
+      cells[i++] = cell;
+    }
+    return cells;
+  }
+
+  /**
+   * Iterates the cells range by range, ranges in order of their top row and
+   * cells in row major order within each range.
+   * Cells are created as they are requested.
+   */
+  @Override
+  public Iterator<Point> iterator() {
+    final Rectangle[] ranges = _ranges.toArray(new Rectangle[_ranges.size()]);
+    return new Iterator<Point>() {
+      private int _range = 0;
+      private int _cell = 0;
+
+      @Override
+      public boolean hasNext() {
+        while (_range < ranges.length) {
+          final Rectangle r = ranges[_range];
+          if (_cell < r.width * r.height)
+            return true;
+
+          _range++;
+          _cell = 0;
+        }
+        return false;
+      }
+
+      @Override
+      public Point next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+
+        final Rectangle r = ranges[_range];
+        final Point cell = new Point(r.x + _cell % r.width, r.y + _cell
+            / r.width);
+        _cell++;
+        return cell;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Adds a range disjoint from the others, joined with every range it extends
+   * into a larger rectangle.
+   */
+  private void join(Rectangle range) {
+    Rectangle joined = range;
+    for (int i = findAdjacent(joined); i >= 0; i = findAdjacent(joined)) {
+      joined = joined.union(_ranges.remove(i));
+      _reachFrom = Math.min(_reachFrom, i);
+    }
+
+    final int position = -Collections.binarySearch(_ranges, joined,
+        TOP_DOWN) - 1;
+    _ranges.add(position, joined);
+    _reachFrom = Math.min(_reachFrom, position);
+  }
+
+  /**
+   * Returns the position of a range the given one extends, or -1 if there is
+   * none. Only the ranges starting at or above its bottom edge and reaching
+   * its top edge are visited.
+   */
+  private int findAdjacent(Rectangle range) {
+    updateReach();
+    for (int i = floor(range.y + range.height); i >= 0
+        && _reach[i] >= range.y; i--) {
+      if (isAdjacent(range, _ranges.get(i)))
+        return i;
+    }
+    return -1;
+  }
+
+  private static boolean isAdjacent(Rectangle a, Rectangle b) {
+    if (a.x == b.x && a.width == b.width)
+      return a.y + a.height == b.y || b.y + b.height == a.y;
+
+    if (a.y == b.y && a.height == b.height)
+      return a.x + a.width == b.x || b.x + b.width == a.x;
+
+    return false;
+  }
+
+  private void sortRanges() {
+    Collections.sort(_ranges, TOP_DOWN);
+    _reachFrom = 0;
+  }
+
+  private void updateReach() {
+    final int size = _ranges.size();
+    if (_reachFrom >= size)
+      return;
+
+    if (_reach.length < size)
+      _reach = Arrays.copyOf(_reach, Math.max(size, _reach.length * 2));
+
+    int reach = _reachFrom == 0 ? Integer.MIN_VALUE : _reach[_reachFrom - 1];
+    for (int i = _reachFrom; i < size; i++) {
+      final Rectangle r = _ranges.get(i);
+      reach = Math.max(reach, r.y + r.height);
+      _reach[i] = reach;
+    }
+    _reachFrom = size;
+  }
+
+  /**
+   * Returns the position of the last range starting at or above the row, or
+   * -1 if there is none.
+   */
+  private int floor(int row) {
+    int low = 0;
+    int high = _ranges.size() - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (_ranges.get(mid).y <= row) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  private static void subtract(Rectangle a, Rectangle b, List<Rectangle> result) {
+    if (!a.intersects(b)) {
+      result.add(a);
+      return;
+    }
+
+    final int aBottom = a.y + a.height;
+    final int bBottom = b.y + b.height;
+    final int aRight = a.x + a.width;
+    final int bRight = b.x + b.width;
+
+    if (b.y > a.y)
+      result.add(new Rectangle(a.x, a.y, a.width, b.y - a.y));
+
+    if (bBottom < aBottom)
+      result.add(new Rectangle(a.x, bBottom, a.width, aBottom - bBottom));
+
+    final int top = Math.max(a.y, b.y);
+    final int height = Math.min(aBottom, bBottom) - top;
+    if (b.x > a.x)
+      result.add(new Rectangle(a.x, top, b.x - a.x, height));
+
+    if (bRight < aRight)
+      result.add(new Rectangle(bRight, top, aRight - bRight, height));
+  }
+
+  private static int compare(int a, int b) {
+    return a < b ? -1 : (a == b ? 0 : 1);
+  }
+
+  private static Rectangle copy(Rectangle r) {
+    return new Rectangle(r.x, r.y, r.width, r.height);
+  }
+}
@@ -17,10 +17,7 @@
  */
 package net.karlmartens.ui.widget;
 
-import java.util.Arrays;
-
 import net.karlmartens.platform.function.Function;
-import net.karlmartens.platform.util.ArraySupport;
 import net.karlmartens.platform.util.NullSafe;
 
 import org.eclipse.swt.SWT;
@@ -41,7 +38,7 @@ public final class CellSelectionManager {
   private Point _focusCell;
   private Point _expansionCell;
 
-  private Point[] _selections = new Point[0];
+  private CellSelection _selections = new CellSelection();
   private boolean _dragExpand = false;
 
   CellSelectionManager(Table table) {
@@ -70,9 +67,9 @@ public final class CellSelectionManager {
     _expansionCell = cell;
 
     if (multi) {
-      _selections = _table.getCellSelections();
+      _selections = _table.getCellSelection();
     } else {
-      _selections = new Point[0];
+      _selections = new CellSelection();
     }
 
     final TableItem newItem = getItemAtIndex(_focusCell);
@@ -88,6 +85,38 @@ public final class CellSelectionManager {
     updateTableSelection();
   }
 
+  /**
+   * Follows a row moved by the table from one index to another, shifting the
+   * rows in between by one. Returns whether the focus or selection moved.
+   */
+  boolean moveRow(int from, int to) {
+    boolean moved = _selections.moveRow(from, to);
+    if (_focusCell != null) {
+      final int y = moveIndex(_focusCell.y, from, to);
+      moved |= y != _focusCell.y;
+      _focusCell = new Point(_focusCell.x, y);
+    }
+    if (_expansionCell != null) {
+      final int y = moveIndex(_expansionCell.y, from, to);
+      moved |= y != _expansionCell.y;
+      _expansionCell = new Point(_expansionCell.x, y);
+    }
+    return moved;
+  }
+
+  private static int moveIndex(int index, int from, int to) {
+    if (index == from)
+      return to;
+
+    if (from < to && index > from && index <= to)
+      return index - 1;
+
+    if (to < from && index >= to && index < from)
+      return index + 1;
+
+    return index;
+  }
+
   public void selectAll() {
     final int minX = _table.getFixedColumnCount();
     final int minY = _table.getFixedRowCount();
@@ -104,8 +133,7 @@ public final class CellSelectionManager {
     final Point originalOrigin = _focusCell;
     final Point originalExpansion = _expansionCell;
     final Rectangle originalFocus = computeFocusBounds();
-    final Point[] originalSelections = Arrays.copyOf(_selections,
-        _selections.length);
+    final CellSelection originalSelections = new CellSelection(_selections);
 
     try {
       r.run();
@@ -130,20 +158,15 @@ public final class CellSelectionManager {
       if (!validCellTest.apply(topLeft) || !validCellTest.apply(bottomRight)) {
         _focusCell = null;
         _expansionCell = null;
-        _selections = ArraySupport.filter(originalSelections,
-            new Function<Point, Boolean>() {
-              @Override
-              public Boolean apply(Point pt) {
-                return !originalFocus.contains(pt);
-              }
-            });
+        _selections = originalSelections;
+        _selections.remove(originalFocus);
       } else {
         _focusCell = originalOrigin;
         _expansionCell = originalExpansion;
         _selections = originalSelections;
       }
 
-      _selections = ArraySupport.filter(_selections, validCellTest);
+      _selections.retain(tableBounds);
 
       updateTableSelection();
     }
@@ -207,27 +230,18 @@ public final class CellSelectionManager {
     }
 
     if (!multi) {
-      _selections = new Point[0];
+      _selections = new CellSelection();
     }
 
-    final int dx = Math.abs(_focusCell.x - vCell.x) + 1;
-    final int dy = Math.abs(_focusCell.y - vCell.y) + 1;
-    final Point vFocusCell = new Point(_focusCell.x, _focusCell.y);
-    final Point[] selection = new Point[dx * dy + _selections.length];
-    int index = 0;
-    for (int y = 0; y < dy; y++) {
-      final int row = vFocusCell.y;
-      vFocusCell.y += dirY;
-      vFocusCell.x = _focusCell.x;
-      for (int x = 0; x < dx; x++) {
-        selection[index++] = new Point(vFocusCell.x, row);
-        vFocusCell.x += dirX;
-      }
-    }
-    System.arraycopy(_selections, 0, selection, index, _selections.length);
+    final CellSelection selection = new CellSelection(_selections);
+    selection.add(new Rectangle(//
+        Math.min(_focusCell.x, vCell.x), //
+        Math.min(_focusCell.y, vCell.y), //
+        Math.abs(_focusCell.x - vCell.x) + 1, //
+        Math.abs(_focusCell.y - vCell.y) + 1));
 
     _expansionCell = vCell;
-    _table.setCellSelections(selection);
+    _table.setCellSelection(selection);
     if (vCell.x < numFixedCols && dirX < 0) {
       _table.showColumn(numFixedCols);
     } else {
@@ -247,13 +261,11 @@ public final class CellSelectionManager {
   }
 
   private void updateTableSelection() {
-    final int insert = _focusCell == null ? 0 : 1;
-    final Point[] newSelections = new Point[_selections.length + insert];
-    System.arraycopy(_selections, 0, newSelections, insert, _selections.length);
+    final CellSelection newSelections = new CellSelection(_selections);
     if (_focusCell != null) {
-      newSelections[0] = _focusCell;
+      newSelections.add(_focusCell.x, _focusCell.y);
     }
-    _table.setCellSelections(newSelections);
+    _table.setCellSelection(newSelections);
   }
 
   private void hookListener() {
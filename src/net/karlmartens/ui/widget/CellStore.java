@@ -0,0 +1,78 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.Image;
+
+/**
+ * Storage for the cell values of table items. Items are addressed by a row
+ * slot handed out by {@link #allocate()}, which is independent of the item's
+ * position in the table. The column index {@link #ROW} addresses the item
+ * level defaults for style, background, foreground and font.
+ */
+interface CellStore {
+
+  int ROW = -1;
+
+  int allocate();
+
+  void release(int row);
+
+  void clear(int row);
+
+  void swapColumns(int first, int second);
+
+  String getText(int row, int column);
+
+  void setText(int row, int column, String text);
+
+  /**
+   * Stores a text computed for a cell that has none. Unlike
+   * {@link #setText(int, int, String)} this does not count as a change of
+   * the cell.
+   */
+  void fillText(int row, int column, String text);
+
+  /**
+   * Returns a copy of the texts of the column indexed by row. Rows past the
+   * end of the copy have no text.
+   */
+  String[] copyTexts(int column);
+
+  Image getImage(int row, int column);
+
+  void setImage(int row, int column, Image image);
+
+  Integer getStyle(int row, int column);
+
+  void setStyle(int row, int column, Integer style);
+
+  Color getBackground(int row, int column);
+
+  void setBackground(int row, int column, Color color);
+
+  Color getForeground(int row, int column);
+
+  void setForeground(int row, int column, Color color);
+
+  Font getFont(int row, int column);
+
+  void setFont(int row, int column, Font font);
+}
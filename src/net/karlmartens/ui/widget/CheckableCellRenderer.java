@@ -17,11 +17,10 @@
  */
 package net.karlmartens.ui.widget;
 
-import net.karlmartens.ui.util.Colors;
+import net.karlmartens.ui.util.BlendedColors;
 
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
-import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.graphics.Rectangle;
 
 import de.kupzog.ktable.KTableModel;
@@ -29,6 +28,7 @@ import de.kupzog.ktable.KTableModel;
 class CheckableCellRenderer extends
     de.kupzog.ktable.renderers.CheckableCellRenderer {
 
+  private final BlendedColors _colors;
   private boolean _active = true;
 
   /**
@@ -46,9 +46,12 @@ class CheckableCellRenderer extends
    *          - SIGN_IMAGE<br>
    *          - SIGN_X<br>
    *          - SIGN_CHECK (default)<br>
+   * @param colors
+   *          Supplies the blended focus background.
    */
-  public CheckableCellRenderer(int style) {
+  public CheckableCellRenderer(int style, BlendedColors colors) {
     super(style);
+    _colors = colors;
   }
 
   public void setActive(boolean active) {
@@ -68,9 +71,9 @@ class CheckableCellRenderer extends
     if (focus && (m_Style & INDICATION_FOCUS) != 0) {
       rect = drawDefaultSolidCellLine(gc, rect, COLOR_LINE_LIGHTGRAY,
           COLOR_LINE_LIGHTGRAY);
-      final RGB blended = Colors.blend(getBackground().getRGB(),
+      final Color blended = _colors.get(getBackground().getRGB(),
           COLOR_BGFOCUS.getRGB(), 0.75);
-      drawCheckableImage(gc, rect, content, new Color(null, blended), clicked);
+      drawCheckableImage(gc, rect, content, blended, clicked);
       if (_active)
         gc.drawFocus(rect.x, rect.y, rect.width, rect.height);
 
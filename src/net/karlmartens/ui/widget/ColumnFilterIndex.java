@@ -0,0 +1,324 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import net.karlmartens.platform.function.Function;
+
+/**
+ * Keeps, for each filtered column, the set of cell store rows its filter
+ * rejects. A row is hidden when any column rejects it. A column is evaluated
+ * again only when its filter or the cells it may read change; a change
+ * between two value filters only visits the rows holding the values that
+ * differ.
+ * <p>
+ * Value filters that must be evaluated from scratch can be evaluated away
+ * from the UI thread, see {@link #prepare(TableColumn[], int)}.
+ */
+final class ColumnFilterIndex {
+
+  private final IndexedCellStore _store;
+  private final Map<TableColumn, Entry> _entries = new LinkedHashMap<TableColumn, Entry>();
+
+  ColumnFilterIndex(IndexedCellStore store) {
+    _store = store;
+  }
+
+  /**
+   * Brings the rejected rows up to date with the filters of the columns and
+   * returns the store rows whose rejection may have changed.
+   *
+   * @param items
+   *          the items to evaluate opaque filters against, indexed by store
+   *          row
+   * @param indexed
+   *          whether value filters may be answered from the cell store, which
+   *          does not hold the cells of virtual items not yet populated
+   */
+  BitSet update(TableColumn[] columns, int columnCount, TableItem[] items,
+      boolean indexed) {
+    final BitSet changed = new BitSet();
+    final Set<TableColumn> current = new HashSet<TableColumn>();
+    for (int i = 0; i < columnCount; i++) {
+      final TableColumn column = columns[i];
+      final Function<TableItem, Boolean> filter = column.getFilter();
+      if (filter == null)
+        continue;
+
+      current.add(column);
+      Entry entry = _entries.get(column);
+      if (entry == null) {
+        entry = new Entry();
+        _entries.put(column, entry);
+      }
+      update(entry, i, filter, items, indexed, changed);
+    }
+
+    // Filters of removed or cleared columns no longer reject anything
+    for (Iterator<Map.Entry<TableColumn, Entry>> it = _entries.entrySet()
+        .iterator(); it.hasNext();) {
+      final Map.Entry<TableColumn, Entry> entry = it.next();
+      if (current.contains(entry.getKey()))
+        continue;
+
+      changed.or(entry.getValue().rejected);
+      it.remove();
+    }
+    return changed;
+  }
+
+  /**
+   * Takes what is needed to evaluate the value filters that must be evaluated
+   * from scratch on another thread. Returns <code>null</code> when there are
+   * none, or when an opaque filter must be evaluated anyway, which can only be
+   * done on the UI thread.
+   */
+  Evaluation prepare(TableColumn[] columns, int columnCount) {
+    final List<Pending> pending = new ArrayList<Pending>();
+    for (int i = 0; i < columnCount; i++) {
+      final TableColumn column = columns[i];
+      final Function<TableItem, Boolean> filter = column.getFilter();
+      if (filter == null)
+        continue;
+
+      final Entry entry = _entries.get(column);
+      if (!(filter instanceof ColumnValueFilter)) {
+        if (entry == null || entry.index != i
+            || entry.version != _store.getVersion()
+            || !filter.equals(entry.filter))
+          return null;
+
+        continue;
+      }
+
+      final long version = _store.getVersion(i);
+      final boolean current = entry != null && entry.index == i
+          && entry.version == version;
+      final Set<String> accepted = ((ColumnValueFilter) filter).getAccepted();
+      if (accepted.isEmpty() || current
+          && (filter.equals(entry.filter) || isDelta(entry.filter, filter)))
+        continue;
+
+      pending.add(new Pending(column, i, (ColumnValueFilter) filter, version,
+          _store.copyTexts(i)));
+    }
+
+    if (pending.isEmpty())
+      return null;
+
+    return new Evaluation(pending, _store.getRows());
+  }
+
+  /**
+   * Adopts the rejected rows of an evaluation and returns the store rows
+   * whose rejection may have changed. Filters or cells that changed since the
+   * evaluation was prepared are left to {@link #update}.
+   */
+  BitSet commit(Evaluation evaluation, TableColumn[] columns, int columnCount) {
+    final BitSet changed = new BitSet();
+    for (Pending pending : evaluation._pending) {
+      if (pending.index >= columnCount
+          || columns[pending.index] != pending.column
+          || pending.column.getFilter() != pending.filter
+          || _store.getVersion(pending.index) != pending.version
+          || pending.rejected == null)
+        continue;
+
+      Entry entry = _entries.get(pending.column);
+      if (entry == null) {
+        entry = new Entry();
+        _entries.put(pending.column, entry);
+      }
+      changed.or(entry.rejected);
+      changed.or(pending.rejected);
+      entry.rejected = pending.rejected;
+      entry.filter = pending.filter;
+      entry.index = pending.index;
+      entry.version = pending.version;
+    }
+    return changed;
+  }
+
+  boolean isRejected(int row) {
+    for (Entry entry : _entries.values()) {
+      if (entry.rejected.get(row))
+        return true;
+    }
+    return false;
+  }
+
+  private void update(Entry entry, int index,
+      Function<TableItem, Boolean> filter, TableItem[] items,
+      boolean indexed, BitSet changed) {
+    final boolean byValue = indexed && filter instanceof ColumnValueFilter;
+    // Opaque filters may read any cell
+    final long version = byValue ? _store.getVersion(index) : _store
+        .getVersion();
+    final boolean current = entry.index == index && entry.version == version;
+    if (current && filter.equals(entry.filter))
+      return;
+
+    if (current && byValue && isDelta(entry.filter, filter)) {
+      final Set<String> previous = ((ColumnValueFilter) entry.filter)
+          .getAccepted();
+      final Set<String> accepted = ((ColumnValueFilter) filter).getAccepted();
+      for (String value : accepted) {
+        if (!previous.contains(value))
+          mark(entry.rejected, index, value, false, changed);
+      }
+      for (String value : previous) {
+        if (!accepted.contains(value))
+          mark(entry.rejected, index, value, true, changed);
+      }
+      entry.filter = filter;
+      return;
+    }
+
+    final BitSet rejected = new BitSet();
+    if (byValue) {
+      final Set<String> accepted = ((ColumnValueFilter) filter).getAccepted();
+      if (!accepted.isEmpty()) {
+        rejected.or(_store.getRows());
+        for (String value : accepted) {
+          mark(rejected, index, value, false, null);
+        }
+      }
+    } else {
+      for (int row = 0; row < items.length; row++) {
+        final TableItem item = items[row];
+        if (item != null && !filter.apply(item))
+          rejected.set(row);
+      }
+    }
+
+    changed.or(entry.rejected);
+    changed.or(rejected);
+    entry.rejected = rejected;
+    entry.filter = filter;
+    entry.index = index;
+    entry.version = version;
+  }
+
+  /**
+   * Returns whether a change between the filters only needs to visit the rows
+   * holding the values that differ.
+   */
+  private static boolean isDelta(Function<TableItem, Boolean> previous,
+      Function<TableItem, Boolean> filter) {
+    return previous instanceof ColumnValueFilter
+        && filter instanceof ColumnValueFilter
+        && !((ColumnValueFilter) previous).getAccepted().isEmpty()
+        && !((ColumnValueFilter) filter).getAccepted().isEmpty();
+  }
+
+  private void mark(BitSet rejected, int index, String value, boolean reject,
+      BitSet changed) {
+    for (int row : _store.getRows(index, value)) {
+      rejected.set(row, reject);
+      if (changed != null)
+        changed.set(row);
+    }
+  }
+
+  /**
+   * Value filters evaluated against a copy of the texts of their column, so
+   * that {@link #run()} may be called on any thread.
+   */
+  static final class Evaluation implements Runnable {
+    private static final int CANCELLATION_CHECK_INTERVAL = 65536;
+
+    private final List<Pending> _pending;
+    private final BitSet _rows;
+
+    private Evaluation(List<Pending> pending, BitSet rows) {
+      _pending = pending;
+      _rows = rows;
+    }
+
+    /**
+     * Returns the indices of the columns being evaluated.
+     */
+    BitSet getColumns() {
+      final BitSet columns = new BitSet();
+      for (Pending pending : _pending) {
+        columns.set(pending.index);
+      }
+      return columns;
+    }
+
+    /**
+     * Computes the rejected rows, stopping with a
+     * {@link CancellationException} when the thread is interrupted.
+     */
+    @Override
+    public void run() {
+      for (Pending pending : _pending) {
+        final Set<String> accepted = pending.filter.getAccepted();
+        final String[] texts = pending.texts;
+        final BitSet rejected = new BitSet();
+        int visited = 0;
+        for (int row = _rows.nextSetBit(0); row >= 0; row = _rows
+            .nextSetBit(row + 1)) {
+          if (++visited % CANCELLATION_CHECK_INTERVAL == 0
+              && Thread.currentThread().isInterrupted())
+            throw new CancellationException();
+
+          // Rows without text are rejected, as in the posting lists
+          final String text = row < texts.length ? texts[row] : null;
+          if (text == null || !accepted.contains(text))
+            rejected.set(row);
+        }
+        pending.rejected = rejected;
+      }
+    }
+  }
+
+  private static final class Pending {
+    private final TableColumn column;
+    private final int index;
+    private final ColumnValueFilter filter;
+    private final long version;
+    private final String[] texts;
+    private BitSet rejected;
+
+    private Pending(TableColumn column, int index, ColumnValueFilter filter,
+        long version, String[] texts) {
+      this.column = column;
+      this.index = index;
+      this.filter = filter;
+      this.version = version;
+      this.texts = texts;
+    }
+  }
+
+  private static final class Entry {
+    private BitSet rejected = new BitSet();
+    private Function<TableItem, Boolean> filter;
+    private int index = -1;
+    private long version = -1;
+  }
+}
@@ -0,0 +1,210 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import static net.karlmartens.ui.widget.CellStore.ROW;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+
+import net.karlmartens.ui.util.Workers;
+
+import org.eclipse.swt.graphics.Font;
+
+/**
+ * Finds the longest texts of table columns, grouped by font. The cells are
+ * read straight from the cell store in chunks spread over the worker threads,
+ * so the caller must not modify the table until the scan returns.
+ */
+final class ColumnTextScanner {
+
+  static final int CHUNK_SIZE = 16384;
+
+  private ColumnTextScanner() {
+    // Nothing to do
+  }
+
+  /**
+   * @param rows
+   *          the store rows to scan
+   * @return for each column, the texts per font ordered from longest to
+   *         shortest, at most <code>limit</code> of them
+   */
+  static List<Map<Font, String[]>> scan(final CellStore store,
+      final int[] rows, int[] columns, final Font defaultFont,
+      final int limit) {
+    final List<Callable<Map<Font, Candidates>>> tasks = new ArrayList<Callable<Map<Font, Candidates>>>();
+    final int[] owners = new int[columns.length
+        * ((rows.length + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+    for (int c = 0; c < columns.length; c++) {
+      final int column = columns[c];
+      for (int start = 0; start < rows.length; start += CHUNK_SIZE) {
+        final int lo = start;
+        final int hi = Math.min(rows.length, start + CHUNK_SIZE);
+        owners[tasks.size()] = c;
+        tasks.add(new Callable<Map<Font, Candidates>>() {
+          @Override
+          public Map<Font, Candidates> call() {
+            return scan(store, rows, lo, hi, column, defaultFont, limit);
+          }
+        });
+      }
+    }
+
+    final List<Map<Font, Candidates>> chunks = Workers.invokeAll(tasks);
+    final List<Map<Font, Candidates>> merged = new ArrayList<Map<Font, Candidates>>();
+    for (int c = 0; c < columns.length; c++) {
+      merged.add(new HashMap<Font, Candidates>());
+    }
+    for (int i = 0; i < chunks.size(); i++) {
+      final Map<Font, Candidates> target = merged.get(owners[i]);
+      for (Entry<Font, Candidates> entry : chunks.get(i).entrySet()) {
+        final Candidates candidates = target.get(entry.getKey());
+        if (candidates == null) {
+          target.put(entry.getKey(), entry.getValue());
+        } else {
+          candidates.offer(entry.getValue());
+        }
+      }
+    }
+
+    final List<Map<Font, String[]>> result = new ArrayList<Map<Font, String[]>>();
+    for (Map<Font, Candidates> column : merged) {
+      final Map<Font, String[]> texts = new HashMap<Font, String[]>();
+      for (Entry<Font, Candidates> entry : column.entrySet()) {
+        texts.put(entry.getKey(), entry.getValue().toArray());
+      }
+      result.add(texts);
+    }
+    return result;
+  }
+
+  /**
+   * Merges texts the store does not hold into the longest texts of a column
+   * returned by {@link #scan}.
+   *
+   * @param texts
+   *          the texts of the store rows, <code>null</code> where there is none
+   */
+  static void offer(Map<Font, String[]> longest, CellStore store, int[] rows,
+      String[] texts, int column, Font defaultFont, int limit) {
+    final Map<Font, Candidates> offered = new HashMap<Font, Candidates>();
+    for (int i = 0; i < rows.length; i++) {
+      final String text = texts[i];
+      if (text == null || text.length() == 0)
+        continue;
+
+      final Font font = getFont(store, rows[i], column, defaultFont);
+      Candidates candidates = offered.get(font);
+      if (candidates == null) {
+        candidates = new Candidates(limit);
+        final String[] existing = longest.get(font);
+        if (existing != null) {
+          for (String e : existing) {
+            candidates.offer(e);
+          }
+        }
+        offered.put(font, candidates);
+      }
+      candidates.offer(text);
+    }
+
+    for (Entry<Font, Candidates> entry : offered.entrySet()) {
+      longest.put(entry.getKey(), entry.getValue().toArray());
+    }
+  }
+
+  private static Font getFont(CellStore store, int row, int column,
+      Font defaultFont) {
+    Font font = store.getFont(row, column);
+    if (font == null)
+      font = store.getFont(row, ROW);
+    if (font == null)
+      font = defaultFont;
+    return font;
+  }
+
+  private static Map<Font, Candidates> scan(CellStore store, int[] rows,
+      int lo, int hi, int column, Font defaultFont, int limit) {
+    final Map<Font, Candidates> result = new HashMap<Font, Candidates>();
+    Font lastFont = null;
+    Candidates last = null;
+    for (int i = lo; i < hi; i++) {
+      final int row = rows[i];
+      final String text = store.getText(row, column);
+      if (text == null || text.length() == 0)
+        continue;
+
+      final Font font = getFont(store, row, column, defaultFont);
+
+      // Most cells share a font, skip the lookup when it repeats
+      if (font != lastFont) {
+        last = result.get(font);
+        if (last == null) {
+          last = new Candidates(limit);
+          result.put(font, last);
+        }
+        lastFont = font;
+      }
+      last.offer(text);
+    }
+    return result;
+  }
+
+  /**
+   * The longest texts offered so far, ordered from longest to shortest.
+   */
+  private static final class Candidates {
+    private final String[] _texts;
+    private int _size = 0;
+
+    private Candidates(int limit) {
+      _texts = new String[limit];
+    }
+
+    void offer(String text) {
+      final int length = text.length();
+      if (_size == _texts.length && _texts[_size - 1].length() >= length)
+        return;
+
+      int i = Math.min(_size, _texts.length - 1);
+      while (i > 0 && _texts[i - 1].length() < length) {
+        _texts[i] = _texts[i - 1];
+        i--;
+      }
+      _texts[i] = text;
+      _size = Math.min(_size + 1, _texts.length);
+    }
+
+    void offer(Candidates other) {
+      for (int i = 0; i < other._size; i++) {
+        offer(other._texts[i]);
+      }
+    }
+
+    String[] toArray() {
+      final String[] texts = new String[_size];
+      System.arraycopy(_texts, 0, texts, 0, _size);
+      return texts;
+    }
+  }
+}
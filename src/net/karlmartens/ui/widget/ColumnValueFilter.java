@@ -0,0 +1,63 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.karlmartens.platform.function.Function;
+
+import org.eclipse.swt.SWT;
+
+/**
+ * Column filter accepting the items whose text in the column is one of the
+ * accepted values, or every item when there are none. The table recognises
+ * this filter and only revisits the rows holding the values that differ from
+ * the previous filter of the column.
+ */
+public final class ColumnValueFilter implements Function<TableItem, Boolean> {
+
+  private final TableColumn _column;
+  private final Set<String> _accepted;
+
+  public ColumnValueFilter(TableColumn column, Set<String> accepted) {
+    if (column == null || accepted == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    _column = column;
+    _accepted = Collections.unmodifiableSet(new HashSet<String>(accepted));
+  }
+
+  public TableColumn getColumn() {
+    return _column;
+  }
+
+  public Set<String> getAccepted() {
+    return _accepted;
+  }
+
+  @Override
+  public Boolean apply(TableItem candidate) {
+    if (_accepted.isEmpty())
+      return true;
+
+    final int index = _column.table().indexOf(_column);
+    return _accepted.contains(candidate.getText(index));
+  }
+}
@@ -0,0 +1,277 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import java.util.Arrays;
+
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.Image;
+
+/**
+ * Column oriented {@link CellStore}. Every column keeps one contiguous array
+ * per attribute, allocated on first use. Images, styles, colours and fonts are
+ * interned in palettes and stored as int ids, which are released when the cell
+ * is overwritten or its row cleared.
+ */
+final class ColumnarCellStore implements CellStore {
+
+  private final Palette<Image> _images = new Palette<Image>();
+  private final Palette<Integer> _styles = new Palette<Integer>();
+  private final Palette<Color> _colors = new Palette<Color>();
+  private final Palette<Font> _fonts = new Palette<Font>();
+
+  private Column[] _columns = new Column[0];
+  private int _rowCount = 0;
+  private int[] _free = new int[0];
+  private int _freeCount = 0;
+
+  @Override
+  public int allocate() {
+    if (_freeCount > 0)
+      return _free[--_freeCount];
+
+    return _rowCount++;
+  }
+
+  @Override
+  public void release(int row) {
+    clear(row);
+
+    if (_freeCount == _free.length)
+      _free = Arrays.copyOf(_free, Math.max(16, _free.length * 3 / 2));
+    _free[_freeCount++] = row;
+  }
+
+  @Override
+  public void clear(int row) {
+    for (Column column : _columns) {
+      if (column == null)
+        continue;
+
+      if (column.texts != null && row < column.texts.length)
+        column.texts[row] = null;
+
+      clear(_images, column.images, row);
+      clear(_styles, column.styles, row);
+      clear(_colors, column.backgrounds, row);
+      clear(_colors, column.foregrounds, row);
+      clear(_fonts, column.fonts, row);
+    }
+  }
+
+  @Override
+  public void swapColumns(int first, int second) {
+    final int f = ensureColumnIndex(first);
+    final int s = ensureColumnIndex(second);
+    final Column t = _columns[f];
+    _columns[f] = _columns[s];
+    _columns[s] = t;
+  }
+
+  @Override
+  public String getText(int row, int column) {
+    final Column c = column(column);
+    if (c == null || c.texts == null || row >= c.texts.length)
+      return null;
+
+    return c.texts[row];
+  }
+
+  @Override
+  public void setText(int row, int column, String text) {
+    final Column c = ensureColumn(column);
+    c.texts = ensureCapacity(c.texts, row);
+    c.texts[row] = text;
+  }
+
+  @Override
+  public void fillText(int row, int column, String text) {
+    setText(row, column, text);
+  }
+
+  @Override
+  public String[] copyTexts(int column) {
+    final Column c = column(column);
+    if (c == null || c.texts == null)
+      return new String[0];
+
+    return Arrays.copyOf(c.texts, Math.min(c.texts.length, _rowCount));
+  }
+
+  @Override
+  public Image getImage(int row, int column) {
+    final Column c = column(column);
+    if (c == null)
+      return null;
+
+    return _images.get(get(c.images, row));
+  }
+
+  @Override
+  public void setImage(int row, int column, Image image) {
+    final Column c = ensureColumn(column);
+    c.images = set(_images, c.images, row, image);
+  }
+
+  @Override
+  public Integer getStyle(int row, int column) {
+    final Column c = column(column);
+    if (c == null)
+      return null;
+
+    return _styles.get(get(c.styles, row));
+  }
+
+  @Override
+  public void setStyle(int row, int column, Integer style) {
+    final Column c = ensureColumn(column);
+    c.styles = set(_styles, c.styles, row, style);
+  }
+
+  @Override
+  public Color getBackground(int row, int column) {
+    final Column c = column(column);
+    if (c == null)
+      return null;
+
+    return _colors.get(get(c.backgrounds, row));
+  }
+
+  @Override
+  public void setBackground(int row, int column, Color color) {
+    final Column c = ensureColumn(column);
+    c.backgrounds = set(_colors, c.backgrounds, row, color);
+  }
+
+  @Override
+  public Color getForeground(int row, int column) {
+    final Column c = column(column);
+    if (c == null)
+      return null;
+
+    return _colors.get(get(c.foregrounds, row));
+  }
+
+  @Override
+  public void setForeground(int row, int column, Color color) {
+    final Column c = ensureColumn(column);
+    c.foregrounds = set(_colors, c.foregrounds, row, color);
+  }
+
+  @Override
+  public Font getFont(int row, int column) {
+    final Column c = column(column);
+    if (c == null)
+      return null;
+
+    return _fonts.get(get(c.fonts, row));
+  }
+
+  @Override
+  public void setFont(int row, int column, Font font) {
+    final Column c = ensureColumn(column);
+    c.fonts = set(_fonts, c.fonts, row, font);
+  }
+
+  private Column column(int column) {
+    final int index = column + 1;
+    if (index < 0 || index >= _columns.length)
+      return null;
+
+    return _columns[index];
+  }
+
+  private Column ensureColumn(int column) {
+    final int index = ensureColumnIndex(column);
+    if (_columns[index] == null)
+      _columns[index] = new Column();
+
+    return _columns[index];
+  }
+
+  private int ensureColumnIndex(int column) {
+    final int index = column + 1;
+    if (index < 0)
+      throw new IllegalArgumentException();
+
+    if (index >= _columns.length)
+      _columns = Arrays.copyOf(_columns, Math.max(index + 1, 4));
+
+    return index;
+  }
+
+  private int capacityFor(int row) {
+    return Math.max(row + 1, Math.max(16, _rowCount));
+  }
+
+  private String[] ensureCapacity(String[] values, int row) {
+    if (values == null)
+      return new String[capacityFor(row)];
+
+    if (row < values.length)
+      return values;
+
+    return Arrays.copyOf(values,
+        Math.max(capacityFor(row), values.length * 3 / 2));
+  }
+
+  private static int get(int[] ids, int row) {
+    if (ids == null || row >= ids.length)
+      return 0;
+
+    return ids[row];
+  }
+
+  private <T> int[] set(Palette<T> palette, int[] ids, int row, T value) {
+    final int previous = get(ids, row);
+    final int id = palette.intern(value);
+    palette.release(previous);
+    if (ids == null) {
+      if (id == 0)
+        return null;
+
+      ids = new int[capacityFor(row)];
+    } else if (row >= ids.length) {
+      if (id == 0)
+        return ids;
+
+      ids = Arrays.copyOf(ids, Math.max(capacityFor(row), ids.length * 3 / 2));
+    }
+
+    ids[row] = id;
+    return ids;
+  }
+
+  private static void clear(Palette<?> palette, int[] ids, int row) {
+    if (ids == null || row >= ids.length)
+      return;
+
+    palette.release(ids[row]);
+    ids[row] = 0;
+  }
+
+  private static final class Column {
+    String[] texts;
+    int[] images;
+    int[] styles;
+    int[] backgrounds;
+    int[] foregrounds;
+    int[] fonts;
+  }
+}
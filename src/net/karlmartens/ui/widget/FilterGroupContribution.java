@@ -20,13 +20,11 @@ package net.karlmartens.ui.widget;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import net.karlmartens.platform.function.Criteria;
-import net.karlmartens.platform.util.NumberStringComparator;
 import net.karlmartens.ui.Images;
 import net.karlmartens.ui.Messages;
 import net.karlmartens.ui.action.FilterColumnAction;
@@ -35,6 +33,7 @@ import net.karlmartens.ui.action.FilterColumnValueAction;
 import org.eclipse.jface.action.ActionContributionItem;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.action.IContributionItem;
+import org.eclipse.jface.action.IMenuListener;
 import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.MenuManager;
 import org.eclipse.jface.action.Separator;
@@ -47,11 +46,14 @@ import org.eclipse.ui.actions.CompoundContributionItem;
 final class FilterGroupContribution extends CompoundContributionItem {
 
   private static final String DATA_KEY = "FilterGroupContribution.data";
+  private static final int TOP_COUNT = 10;
+  private static final int PAGE_SIZE = 50;
 
   private final Table _table;
   private final String _menuText;
   private final String _allText;
   private final String _topTextText;
+  private final String _moreText;
 
   private int _columnIndex;
 
@@ -61,6 +63,7 @@ final class FilterGroupContribution extends CompoundContributionItem {
     _menuText = Messages.FILTER.string();
     _allText = Messages.FILTER_ALL.string();
     _topTextText = Messages.FILTER_TOPTEN.string();
+    _moreText = Messages.FILTER_MORE.string();
   }
 
   public void setColumnIndex(int columnIndex) {
@@ -90,40 +93,73 @@ final class FilterGroupContribution extends CompoundContributionItem {
         Criteria.<TableItem>all());
     menu.add(new ActionContributionItem(allAction));
 
-    final TableItem[] items = _table.getItems();
-    Arrays.sort(items, new TableItemSorter(_columnIndex));
-
-    final int from = Math.max(items.length - 10, 0);
-    final int to = from + Math.min(10, items.length);
-    final TableItem[] topTen = Arrays.copyOfRange(items, from, to);
     final IAction topTenFilter = new FilterColumnAction(column, _topTextText,
-        Criteria.accepting(topTen));
+        Criteria.accepting(_table.getTopItems(_columnIndex, TOP_COUNT)));
     menu.add(new ActionContributionItem(topTenFilter));
 
     menu.add(new Separator());
 
-    final Set<String> values = new HashSet<String>();
-    for (TableItem item : items) {
-      final String value = item.getText(_columnIndex);
-      values.add(value);
-    }
+    addValues(menu, column, null);
+
+    menu.update();
+
+    return new IContributionItem[] { menu };
+  }
 
+  /**
+   * Adds a page of values following <code>after</code>, and a submenu that
+   * fills in the next page when it is shown.
+   */
+  private void addValues(IMenuManager menu, final TableColumn column,
+      String after) {
+    final int index = _table.indexOf(column);
+    String[] page = _table.getDistinctValues(index, after, PAGE_SIZE + 1);
+    final boolean more = page.length > PAGE_SIZE;
+    if (more)
+      page = Arrays.copyOf(page, PAGE_SIZE);
+
+    // Accepted values in the range of the page but missing from it are no
+    // longer in the column, they are listed so they can be cleared
     final Set<String> accepted = getOrCreateAccepted(column);
+    final List<String> values = new ArrayList<String>(Arrays.asList(page));
+    final Set<String> present = new HashSet<String>(values);
     for (String value : accepted) {
+      if (value == null || present.contains(value))
+        continue;
+
+      if (after != null && IndexedCellStore.ORDER.compare(value, after) <= 0)
+        continue;
+
+      if (more
+          && IndexedCellStore.ORDER.compare(value, page[page.length - 1]) > 0)
+        continue;
+
       values.add(value);
     }
+    Collections.sort(values, IndexedCellStore.ORDER);
 
-    final List<String> sortedValues = new ArrayList<String>(values);
-    Collections.sort(sortedValues, new NumberStringComparator());
-    for (String value : sortedValues) {
+    for (String value : values) {
       final IAction action = new FilterColumnValueAction(column, value,
           accepted);
       menu.add(new ActionContributionItem(action));
     }
 
-    menu.update();
+    if (!more)
+      return;
 
-    return new IContributionItem[] { menu };
+    final String last = page[page.length - 1];
+    final MenuManager next = new MenuManager(_moreText);
+    next.setRemoveAllWhenShown(true);
+    next.addMenuListener(new IMenuListener() {
+      @Override
+      public void menuAboutToShow(IMenuManager manager) {
+        if (column.isDisposed())
+          return;
+
+        addValues(manager, column, last);
+      }
+    });
+    menu.add(next);
   }
 
   private Set<String> getOrCreateAccepted(TableColumn column) {
@@ -145,30 +181,4 @@ final class FilterGroupContribution extends CompoundContributionItem {
 
     return _menuManager;
   }
-
-  private static class TableItemSorter implements Comparator<TableItem> {
-
-    private final Comparator<String> _comparator = new NumberStringComparator();
-    private int _index;
-
-    public TableItemSorter(int columnIndex) {
-      _index = columnIndex;
-    }
-
-    @Override
-    public int compare(TableItem o1, TableItem o2) {
-      if (o1 == o2)
-        return 0;
-
-      if (o1 == null)
-        return -1;
-
-      if (o2 == null)
-        return 1;
-
-      final String s1 = o1.getText(_index);
-      final String s2 = o2.getText(_index);
-      return _comparator.compare(s1, s2);
-    }
-  }
 }
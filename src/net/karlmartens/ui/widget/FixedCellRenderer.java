@@ -17,6 +17,8 @@
  */
 package net.karlmartens.ui.widget;
 
+import net.karlmartens.ui.util.TextExtents;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
@@ -41,9 +43,12 @@ public class FixedCellRenderer extends
       .getSystemColor(SWT.COLOR_TITLE_INACTIVE_FOREGROUND);
   public static Color COLOR_FILTER_INDICATOR = Display.getDefault()
       .getSystemColor(SWT.COLOR_BLUE);
+  public static Color COLOR_BUSY_INDICATOR = Display.getDefault()
+      .getSystemColor(SWT.COLOR_DARK_GRAY);
 
   private boolean _active = true;
   private boolean _filtered;
+  private boolean _busy;
   private Image _image;
 
   /**
@@ -82,6 +87,10 @@ public class FixedCellRenderer extends
     _filtered = filtered;
   }
 
+  public void setBusy(boolean busy) {
+    _busy = busy;
+  }
+
   public void drawCell(GC gc, Rectangle rect, int col, int row, Object content,
       boolean focus, boolean fixed, boolean clicked, KTableModel model) {
     applyFont(gc);
@@ -134,6 +143,11 @@ public class FixedCellRenderer extends
         gc.fillArc(oRect.x + oRect.width - 4, oRect.y + oRect.height - 4, 3, 3,
             0, 360);
       }
+
+      if (_busy) {
+        gc.setForeground(COLOR_BUSY_INDICATOR);
+        gc.drawArc(oRect.x + oRect.width - 8, oRect.y + 1, 6, 6, 90, 270);
+      }
     } else { // STYLE_PUSH
       drawCellButton(gc, rect, "", clicked
           && (m_Style & INDICATION_CLICKED) != 0);
@@ -155,6 +169,11 @@ public class FixedCellRenderer extends
         gc.fillArc(oRect.x + oRect.width - 4, oRect.y + oRect.height - 4, 3, 3,
             0, 360);
       }
+
+      if (_busy) {
+        gc.setForeground(COLOR_BUSY_INDICATOR);
+        gc.drawArc(oRect.x + oRect.width - 8, oRect.y + 1, 6, 6, 90, 270);
+      }
     }
     resetFont(gc);
   }
@@ -176,7 +195,8 @@ public class FixedCellRenderer extends
         indicator = IMAGE_ARROWUP;
 
       if (indicator != null) {
-        int contentLength = rect.x + 11 + gc.stringExtent(content.toString()).x;
+        int contentLength = rect.x + 11
+            + TextExtents.textExtent(gc, content.toString()).x;
         x = rect.x + rect.width - 8;
         if (contentLength < x)
           x = contentLength;
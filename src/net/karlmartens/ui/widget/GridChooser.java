@@ -92,6 +92,7 @@ public final class GridChooser extends Composite {
   private GridChooserColumn[] _columns;
   private GridChooserItem[] _items;
   private int _lastIndexOf;
+  private final CellStore _cells = new ColumnarCellStore();
 
   public GridChooser(Composite parent) {
     super(parent, SWT.NONE);
@@ -524,6 +525,10 @@ public final class GridChooser extends Composite {
     removeListener(SWT.DefaultSelection, listener);
   }
 
+  CellStore getCellStore() {
+    return _cells;
+  }
+
   void createItem(GridChooserColumn item, int index) {
     if (index < 0 || index > _columnCount)
       SWT.error(SWT.ERROR_INVALID_RANGE);
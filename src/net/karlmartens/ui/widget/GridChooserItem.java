@@ -30,7 +30,7 @@ public final class GridChooserItem extends AbstractTableItem {
   }
 
   public GridChooserItem(GridChooser parent, int style, int rowIndex) {
-    super(parent, style);
+    super(parent, style, parent.getCellStore());
     _parent = parent;
     parent.createItem(this, rowIndex);
   }
@@ -38,8 +38,9 @@ public final class GridChooserItem extends AbstractTableItem {
   @Override
   public Color getBackground() {
     checkWidget();
-    if (_background != null)
-      return _background;
+    final Color background = getItemBackground();
+    if (background != null)
+      return background;
 
     if (isSelected())
       return _parent.getSelectedComposite().getBackground();
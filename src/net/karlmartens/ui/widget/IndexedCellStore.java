@@ -0,0 +1,411 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import net.karlmartens.platform.util.NumberStringComparator;
+
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.Image;
+
+/**
+ * Cell store that keeps an index of the distinct texts of a column and the
+ * number of rows holding each of them. A column is indexed the first time it
+ * is queried and is kept up to date from then on, so columns that are never
+ * queried cost nothing.
+ * <p>
+ * The rows holding each text are listed on demand and kept until the column
+ * changes. Every column carries a version that changes with its cells.
+ */
+final class IndexedCellStore implements CellStore {
+
+  /**
+   * Orders texts as numbers where possible. Texts the number comparison
+   * considers equal are told apart by their characters.
+   */
+  static final Comparator<String> ORDER = new Comparator<String>() {
+    private final Comparator<String> _comparator = new NumberStringComparator();
+
+    @Override
+    public int compare(String o1, String o2) {
+      final int result = _comparator.compare(o1, o2);
+      if (result != 0)
+        return result;
+
+      return o1.compareTo(o2);
+    }
+  };
+
+  private final CellStore _delegate;
+  private final BitSet _rows = new BitSet();
+  private final Map<Integer, TreeMap<String, int[]>> _indexes = new HashMap<Integer, TreeMap<String, int[]>>();
+  private final Map<Integer, Map<String, int[]>> _postings = new HashMap<Integer, Map<String, int[]>>();
+  private long[] _versions = new long[0];
+  private long _structure = 0;
+  private long _modifications = 0;
+
+  IndexedCellStore(CellStore delegate) {
+    _delegate = delegate;
+  }
+
+  /**
+   * Returns up to <code>limit</code> distinct texts of the column in
+   * ascending order, starting after <code>after</code>, or from the first one
+   * when it is <code>null</code>.
+   */
+  String[] getValues(int column, String after, int limit) {
+    final TreeMap<String, int[]> index = index(column);
+    final Map<String, int[]> tail = after == null ? index : index.tailMap(
+        after, false);
+    final List<String> values = new ArrayList<String>(Math.min(limit,
+        tail.size()));
+    for (String value : tail.keySet()) {
+      if (values.size() >= limit)
+        break;
+
+      values.add(value);
+    }
+    return values.toArray(new String[values.size()]);
+  }
+
+  /**
+   * Returns the largest distinct texts of the column in descending order with
+   * the number of rows holding each, stopping once they cover
+   * <code>count</code> rows.
+   */
+  Map<String, Integer> getLargestValues(int column, int count) {
+    final Map<String, Integer> values = new LinkedHashMap<String, Integer>();
+    int covered = 0;
+    for (Entry<String, int[]> entry : index(column).descendingMap()
+        .entrySet()) {
+      if (covered >= count)
+        break;
+
+      values.put(entry.getKey(), entry.getValue()[0]);
+      covered += entry.getValue()[0];
+    }
+    return values;
+  }
+
+  /**
+   * Returns the rows holding the text in the column, in ascending order.
+   */
+  int[] getRows(int column, String text) {
+    Map<String, int[]> postings = _postings.get(column);
+    if (postings == null) {
+      postings = buildPostings(column);
+      _postings.put(column, postings);
+    }
+
+    final int[] rows = postings.get(text);
+    return rows == null ? new int[0] : rows;
+  }
+
+  /**
+   * Returns the live rows, those allocated and not yet released.
+   */
+  BitSet getRows() {
+    return (BitSet) _rows.clone();
+  }
+
+  /**
+   * Returns a number that changes whenever a cell of the column changes or
+   * rows are allocated, released or cleared.
+   */
+  long getVersion(int column) {
+    final long version = column < _versions.length ? _versions[column] : 0;
+    return _structure + version;
+  }
+
+  /**
+   * Returns a number that changes whenever any cell changes or rows are
+   * allocated, released or cleared.
+   */
+  long getVersion() {
+    return _modifications;
+  }
+
+  @Override
+  public int allocate() {
+    final int row = _delegate.allocate();
+    _rows.set(row);
+    changed();
+    return row;
+  }
+
+  @Override
+  public void release(int row) {
+    unindex(row);
+    _rows.clear(row);
+    _delegate.release(row);
+    changed();
+  }
+
+  @Override
+  public void clear(int row) {
+    unindex(row);
+    _delegate.clear(row);
+    changed();
+  }
+
+  @Override
+  public void swapColumns(int first, int second) {
+    final TreeMap<String, int[]> f = _indexes.remove(first);
+    final TreeMap<String, int[]> s = _indexes.remove(second);
+    if (f != null)
+      _indexes.put(second, f);
+    if (s != null)
+      _indexes.put(first, s);
+
+    _delegate.swapColumns(first, second);
+    changed(first);
+    changed(second);
+  }
+
+  @Override
+  public String getText(int row, int column) {
+    return _delegate.getText(row, column);
+  }
+
+  @Override
+  public void setText(int row, int column, String text) {
+    final TreeMap<String, int[]> index = _indexes.get(column);
+    if (index != null) {
+      decrement(index, _delegate.getText(row, column));
+      increment(index, text);
+    }
+    _delegate.setText(row, column, text);
+    changed(column);
+  }
+
+  /**
+   * Keeps the index and the posting lists of the column up to date without
+   * changing its version. Scans that depend on the version have the texts of
+   * every row computed before they run, so a text computed later only fills
+   * a cell emptied by a change that did bump it.
+   */
+  @Override
+  public void fillText(int row, int column, String text) {
+    if (_delegate.getText(row, column) != null) {
+      setText(row, column, text);
+      return;
+    }
+
+    final TreeMap<String, int[]> index = _indexes.get(column);
+    if (index != null)
+      increment(index, text);
+
+    final Map<String, int[]> postings = _postings.get(column);
+    if (postings != null)
+      post(postings, text, row);
+
+    _delegate.setText(row, column, text);
+  }
+
+  @Override
+  public String[] copyTexts(int column) {
+    return _delegate.copyTexts(column);
+  }
+
+  @Override
+  public Image getImage(int row, int column) {
+    return _delegate.getImage(row, column);
+  }
+
+  @Override
+  public void setImage(int row, int column, Image image) {
+    _delegate.setImage(row, column, image);
+  }
+
+  @Override
+  public Integer getStyle(int row, int column) {
+    return _delegate.getStyle(row, column);
+  }
+
+  @Override
+  public void setStyle(int row, int column, Integer style) {
+    _delegate.setStyle(row, column, style);
+  }
+
+  @Override
+  public Color getBackground(int row, int column) {
+    return _delegate.getBackground(row, column);
+  }
+
+  @Override
+  public void setBackground(int row, int column, Color color) {
+    _delegate.setBackground(row, column, color);
+  }
+
+  @Override
+  public Color getForeground(int row, int column) {
+    return _delegate.getForeground(row, column);
+  }
+
+  @Override
+  public void setForeground(int row, int column, Color color) {
+    _delegate.setForeground(row, column, color);
+  }
+
+  @Override
+  public Font getFont(int row, int column) {
+    return _delegate.getFont(row, column);
+  }
+
+  @Override
+  public void setFont(int row, int column, Font font) {
+    _delegate.setFont(row, column, font);
+  }
+
+  private TreeMap<String, int[]> index(int column) {
+    TreeMap<String, int[]> index = _indexes.get(column);
+    if (index == null) {
+      // Counting in a hash map first keeps the comparisons down to one
+      // insertion per distinct text
+      final Map<String, int[]> counts = new HashMap<String, int[]>();
+      for (int row = _rows.nextSetBit(0); row >= 0; row = _rows
+          .nextSetBit(row + 1)) {
+        final String text = _delegate.getText(row, column);
+        if (text == null)
+          continue;
+
+        final int[] count = counts.get(text);
+        if (count == null) {
+          counts.put(text, new int[] { 1 });
+        } else {
+          count[0]++;
+        }
+      }
+
+      index = new TreeMap<String, int[]>(ORDER);
+      index.putAll(counts);
+      _indexes.put(column, index);
+    }
+    return index;
+  }
+
+  private Map<String, int[]> buildPostings(int column) {
+    final Map<String, int[]> rows = new HashMap<String, int[]>();
+    final Map<String, int[]> sizes = new HashMap<String, int[]>();
+    for (int row = _rows.nextSetBit(0); row >= 0; row = _rows
+        .nextSetBit(row + 1)) {
+      final String text = _delegate.getText(row, column);
+      if (text == null)
+        continue;
+
+      int[] list = rows.get(text);
+      int[] size = sizes.get(text);
+      if (list == null) {
+        list = new int[4];
+        size = new int[1];
+        rows.put(text, list);
+        sizes.put(text, size);
+      } else if (size[0] == list.length) {
+        list = Arrays.copyOf(list, list.length * 2);
+        rows.put(text, list);
+      }
+      list[size[0]++] = row;
+    }
+
+    for (Entry<String, int[]> entry : rows.entrySet()) {
+      entry.setValue(Arrays.copyOf(entry.getValue(),
+          sizes.get(entry.getKey())[0]));
+    }
+    return rows;
+  }
+
+  private void changed() {
+    _structure++;
+    _modifications++;
+    _postings.clear();
+  }
+
+  private void changed(int column) {
+    if (column < 0)
+      return;
+
+    if (column >= _versions.length)
+      _versions = Arrays.copyOf(_versions, Math.max(column + 1,
+          _versions.length * 2));
+    _versions[column]++;
+    _modifications++;
+    _postings.remove(column);
+  }
+
+  private void unindex(int row) {
+    for (Entry<Integer, TreeMap<String, int[]>> entry : _indexes.entrySet()) {
+      decrement(entry.getValue(), _delegate.getText(row, entry.getKey()));
+    }
+  }
+
+  private static void post(Map<String, int[]> postings, String text, int row) {
+    if (text == null)
+      return;
+
+    final int[] rows = postings.get(text);
+    if (rows == null) {
+      postings.put(text, new int[] { row });
+      return;
+    }
+
+    final int at = -Arrays.binarySearch(rows, row) - 1;
+    if (at < 0)
+      return;
+
+    final int[] posted = new int[rows.length + 1];
+    System.arraycopy(rows, 0, posted, 0, at);
+    posted[at] = row;
+    System.arraycopy(rows, at, posted, at + 1, rows.length - at);
+    postings.put(text, posted);
+  }
+
+  private static void increment(TreeMap<String, int[]> index, String text) {
+    if (text == null)
+      return;
+
+    final int[] count = index.get(text);
+    if (count == null) {
+      index.put(text, new int[] { 1 });
+    } else {
+      count[0]++;
+    }
+  }
+
+  private static void decrement(TreeMap<String, int[]> index, String text) {
+    if (text == null)
+      return;
+
+    final int[] count = index.get(text);
+    if (count == null)
+      return;
+
+    if (--count[0] == 0)
+      index.remove(text);
+  }
+}
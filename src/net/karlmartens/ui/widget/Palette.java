@@ -0,0 +1,121 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Resource;
+
+/**
+ * Interns values and addresses them by a small int id. The id 0 is reserved
+ * for <code>null</code>.
+ * <p>
+ * Every {@link #intern(Object)} must be balanced by a {@link #release(int)}.
+ * An id is recycled once nothing refers to it, so the palette holds only the
+ * values still in use. Resources are told apart by identity, since their
+ * equality and hash codes change once they are disposed.
+ */
+final class Palette<T> {
+
+  private final Map<Object, Integer> _ids = new HashMap<Object, Integer>();
+  private Object[] _values = new Object[16];
+  private int[] _references = new int[16];
+  private int _size = 1;
+  private int[] _free = new int[0];
+  private int _freeCount = 0;
+
+  /**
+   * Returns the id of the value and adds a reference to it.
+   */
+  int intern(T value) {
+    if (value == null)
+      return 0;
+
+    final Object key = key(value);
+    final Integer id = _ids.get(key);
+    if (id != null) {
+      _references[id]++;
+      return id;
+    }
+
+    final int newId;
+    if (_freeCount > 0) {
+      newId = _free[--_freeCount];
+    } else {
+      if (_size == _values.length) {
+        _values = Arrays.copyOf(_values, _size * 2);
+        _references = Arrays.copyOf(_references, _size * 2);
+      }
+      newId = _size++;
+    }
+    _values[newId] = value;
+    _references[newId] = 1;
+    _ids.put(key, newId);
+    return newId;
+  }
+
+  /**
+   * Drops a reference to the id, forgetting its value after the last one.
+   */
+  void release(int id) {
+    if (id == 0 || --_references[id] > 0)
+      return;
+
+    _ids.remove(key(_values[id]));
+    _values[id] = null;
+    if (_freeCount == _free.length)
+      _free = Arrays.copyOf(_free, Math.max(16, _free.length * 2));
+    _free[_freeCount++] = id;
+  }
+
+  @SuppressWarnings("unchecked")
+  T get(int id) {
+    return (T) _values[id];
+  }
+
+  /**
+   * Returns the number of distinct values in use.
+   */
+  int size() {
+    return _ids.size();
+  }
+
+  private static Object key(Object value) {
+    return value instanceof Resource ? new Identity(value) : value;
+  }
+
+  private static final class Identity {
+    private final Object _value;
+
+    private Identity(Object value) {
+      _value = value;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(_value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Identity && ((Identity) obj)._value == _value;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+/**
+ * Binary indexed (Fenwick) tree over row heights. Answers prefix sums of row
+ * heights, and therefore row offsets, in O(log n).
+ */
+final class RowHeightIndex {
+
+  private int[] _tree = new int[1];
+  private int _size = 0;
+
+  void reset(int[] heights, int size) {
+    if (_tree.length < size + 1)
+      _tree = new int[size + 1];
+
+    _size = size;
+    _tree[0] = 0;
+    System.arraycopy(heights, 0, _tree, 1, size);
+    for (int i = 1; i <= size; i++) {
+      final int parent = i + (i & -i);
+      if (parent <= size)
+        _tree[parent] += _tree[i];
+    }
+  }
+
+  int size() {
+    return _size;
+  }
+
+  int get(int index) {
+    return sum(index + 1) - sum(index);
+  }
+
+  void set(int index, int height) {
+    final int delta = height - get(index);
+    if (delta == 0)
+      return;
+
+    for (int i = index + 1; i <= _size; i += i & -i) {
+      _tree[i] += delta;
+    }
+  }
+
+  /**
+   * Returns the sum of the heights of the rows in [0, end).
+   */
+  int sum(int end) {
+    int sum = 0;
+    for (int i = Math.min(end, _size); i > 0; i -= i & -i) {
+      sum += _tree[i];
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,302 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import java.util.Arrays;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Paints a sparkline of bars, one per data point, with an optional shaded
+ * band behind them and any number of line series over them. The figure paints
+ * an image that is rendered again only when the data, the size or the colours
+ * change, so painting costs the same whatever the length of the series.
+ * <p>
+ * Point <code>i</code> of <code>n</code> starts at pixel
+ * <code>i * width / n</code>. When there are more points than pixels, each
+ * pixel column shows the lowest and highest of its points, which is exactly
+ * what their overlapping bars would cover. These extremes are kept until the
+ * data or the width changes.
+ */
+final class SparklineFigure extends Figure {
+
+  private double[] _data = new double[0];
+  private double[] _bandLows;
+  private double[] _bandHighs;
+  private double[][] _series = new double[0][];
+  private int _count = 0;
+  private long _version = 0;
+  private Color _color;
+  private Color _bandColor;
+  private Color _seriesColor;
+  private Image _image;
+  private boolean _dirty = true;
+
+  private Extents _bars;
+  private Extents _band;
+  private Extents[] _lines;
+  private long _sampledVersion = -1;
+  private int _sampledWidth = -1;
+
+  /**
+   * Returns the pixel at which the point starts, or at which the last one
+   * ends for <code>index == count</code>.
+   */
+  static int computeX(int index, int count, int width) {
+    if (count <= 0)
+      return 0;
+
+    return (int) ((long) index * width / count);
+  }
+
+  /**
+   * @param bandLows
+   *          the lower edge of the band, or <code>null</code> for none
+   * @param version
+   *          a number that changes whenever any of the values change
+   */
+  void setData(double[] data, double[] bandLows, double[] bandHighs,
+      double[][] series, int count, long version) {
+    _data = data;
+    _bandLows = bandLows;
+    _bandHighs = bandHighs;
+    _series = series;
+    _count = count;
+    _version = version;
+    invalidateImage();
+  }
+
+  void setColors(Color color, Color bandColor, Color seriesColor) {
+    _color = color;
+    _bandColor = bandColor;
+    _seriesColor = seriesColor;
+    invalidateImage();
+  }
+
+  void invalidateImage() {
+    _dirty = true;
+    repaint();
+  }
+
+  void dispose() {
+    if (_image != null)
+      _image.dispose();
+    _image = null;
+  }
+
+  @Override
+  protected void paintFigure(Graphics graphics) {
+    final Rectangle bounds = getBounds();
+    if (bounds.width <= 0 || bounds.height <= 0)
+      return;
+
+    if (_image == null || _dirty
+        || _image.getBounds().width != bounds.width
+        || _image.getBounds().height != bounds.height) {
+      render(bounds.width, bounds.height);
+    }
+    graphics.drawImage(_image, bounds.x, bounds.y);
+  }
+
+  private void render(int width, int height) {
+    dispose();
+    _dirty = false;
+    _image = new Image(Display.getCurrent(), width, height);
+
+    final GC gc = new GC(_image);
+    try {
+      gc.setBackground(getBackgroundColor());
+      gc.fillRectangle(0, 0, width, height);
+
+      sample(width);
+      double max = 0.0;
+      double min = 0.0;
+      for (Extents extents : all()) {
+        max = Math.max(max, extents.max());
+        min = Math.min(min, extents.min());
+      }
+      final double range = max - min;
+      if (range <= 0.0)
+        return;
+
+      final double scale = height * 0.9 / range;
+      final int origin = (int) (height * (max / range + 0.05));
+      final int slots = _bars.lows.length;
+      if (_band != null && _bandColor != null) {
+        gc.setBackground(_bandColor);
+        fill(gc, _band, slots, width, origin, scale, 1);
+      }
+
+      if (_color != null) {
+        gc.setBackground(_color);
+        fill(gc, _bars, slots, width, origin, scale, 0);
+      }
+
+      if (_seriesColor != null) {
+        gc.setForeground(_seriesColor);
+        for (Extents line : _lines) {
+          draw(gc, line, slots, width, origin, scale);
+        }
+      }
+    } finally {
+      gc.dispose();
+    }
+  }
+
+  /**
+   * Fills every slot from its highest to its lowest value, at least
+   * <code>minimum</code> pixels high.
+   */
+  private static void fill(GC gc, Extents extents, int slots, int width,
+      int origin, double scale, int minimum) {
+    for (int s = 0; s < slots; s++) {
+      if (Double.isNaN(extents.lows[s]))
+        continue;
+
+      final int x = computeX(s, slots, width);
+      final int w = computeX(s + 1, slots, width) - x;
+      final int top = origin - (int) (scale * extents.highs[s]);
+      final int bottom = origin - (int) (scale * extents.lows[s]);
+      if (w > 0 && bottom - top >= Math.max(minimum, 1))
+        gc.fillRectangle(x, top, w, bottom - top);
+      else if (w > 0 && minimum > 0)
+        gc.fillRectangle(x, top, w, minimum);
+    }
+  }
+
+  /**
+   * Joins the slots with a line through the middle of each, running from the
+   * highest to the lowest value of slots holding several points. Slots
+   * without a value break the line.
+   */
+  private static void draw(GC gc, Extents extents, int slots, int width,
+      int origin, double scale) {
+    final int[] points = new int[slots * 4];
+    int size = 0;
+    for (int s = 0; s <= slots; s++) {
+      if (s == slots || Double.isNaN(extents.lows[s])) {
+        if (size >= 4)
+          gc.drawPolyline(Arrays.copyOf(points, size));
+        size = 0;
+        continue;
+      }
+
+      final int x = (computeX(s, slots, width) + computeX(s + 1, slots,
+          width)) / 2;
+      final int high = origin - (int) (scale * extents.highs[s]);
+      final int low = origin - (int) (scale * extents.lows[s]);
+      points[size++] = x;
+      points[size++] = high;
+      if (low != high) {
+        points[size++] = x;
+        points[size++] = low;
+      }
+    }
+  }
+
+  private Extents[] all() {
+    final Extents[] all = new Extents[_lines.length + 2];
+    all[0] = _bars;
+    all[1] = _band == null ? _bars : _band;
+    System.arraycopy(_lines, 0, all, 2, _lines.length);
+    return all;
+  }
+
+  private void sample(int width) {
+    if (_sampledVersion == _version && _sampledWidth == width)
+      return;
+
+    final int slots = Math.min(_count, width);
+    _bars = Extents.of(_data, _data, _count, slots, width, true);
+    _band = _bandLows == null || _bandHighs == null ? null : Extents.of(
+        _bandLows, _bandHighs, _count, slots, width, false);
+    _lines = new Extents[_series.length];
+    for (int i = 0; i < _lines.length; i++) {
+      _lines[i] = Extents.of(_series[i], _series[i], _count, slots, width,
+          false);
+    }
+    _sampledVersion = _version;
+    _sampledWidth = width;
+  }
+
+  /**
+   * The lowest and highest value of every slot, NaN for slots without any.
+   */
+  private static final class Extents {
+    private final double[] lows;
+    private final double[] highs;
+
+    private Extents(int slots) {
+      lows = new double[slots];
+      highs = new double[slots];
+    }
+
+    /**
+     * Gathers the points into slots, one per point when there are no more
+     * points than pixels, one per pixel column otherwise.
+     *
+     * @param fromZero
+     *          whether the slots are measured from zero, as bars are
+     */
+    static Extents of(double[] lows, double[] highs, int count, int slots,
+        int width, boolean fromZero) {
+      final Extents extents = new Extents(slots);
+      Arrays.fill(extents.lows, fromZero ? 0.0 : Double.NaN);
+      Arrays.fill(extents.highs, fromZero ? 0.0 : Double.NaN);
+
+      final int n = Math.min(count, Math.min(lows.length, highs.length));
+      for (int i = 0; i < n; i++) {
+        final double low = lows[i];
+        final double high = highs[i];
+        if (Double.isNaN(low) || Double.isNaN(high))
+          continue;
+
+        final int s = slots == count ? i : computeX(i, count, width);
+        if (Double.isNaN(extents.lows[s]) || low < extents.lows[s])
+          extents.lows[s] = low;
+        if (Double.isNaN(extents.highs[s]) || high > extents.highs[s])
+          extents.highs[s] = high;
+      }
+      return extents;
+    }
+
+    double max() {
+      double max = 0.0;
+      for (double high : highs) {
+        if (high > max)
+          max = high;
+      }
+      return max;
+    }
+
+    double min() {
+      double min = 0.0;
+      for (double low : lows) {
+        if (low < min)
+          min = low;
+      }
+      return min;
+    }
+  }
+}
@@ -25,8 +25,6 @@ import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
 
-import net.karlmartens.platform.util.ArraySupport;
-
 import org.eclipse.draw2d.ColorConstants;
 import org.eclipse.draw2d.FigureCanvas;
 import org.eclipse.draw2d.IFigure;
@@ -68,12 +66,15 @@ public final class SparklineScrollBar extends Composite {
 
   private Color _dataPointColor = ColorConstants.gray;
   private Color _highlightColor = ColorConstants.blue;
+  private Color _bandColor = ColorConstants.lightGray;
+  private Color _seriesColor = ColorConstants.darkGray;
 
   private final Image[] _images;
   private final org.eclipse.swt.widgets.Label _left;
   private final FigureCanvas _track;
   private final org.eclipse.swt.widgets.Label _right;
   private Layer _sparkLineLayer;
+  private SparklineFigure _sparklineFigure;
   private Layer _thumbLayer;
   private Layer _highlightLayer;
   private RectangleFigure _thumbFigure;
@@ -87,6 +88,10 @@ public final class SparklineScrollBar extends Composite {
   private int _increment = 1;
   private int _selection = 0;
   private double[] _data = new double[101];
+  private double[] _bandLows;
+  private double[] _bandHighs;
+  private double[][] _series = new double[0][];
+  private long _dataVersion = 0;
   private boolean _inUpdate = false;
 
   public SparklineScrollBar(Composite parent, int style) {
@@ -147,6 +152,10 @@ public final class SparklineScrollBar extends Composite {
     _sparkLineLayer.setLayoutManager(new XYLayout());
     container.add(_sparkLineLayer, 0);
 
+    _sparklineFigure = new SparklineFigure();
+    _sparklineFigure.setColors(_dataPointColor, _bandColor, _seriesColor);
+    _sparkLineLayer.add(_sparklineFigure);
+
     _highlightLayer = new Layer();
     _highlightLayer.setLayoutManager(new XYLayout());
     container.add(_highlightLayer, 1);
@@ -374,6 +383,52 @@ public final class SparklineScrollBar extends Composite {
     final int i = index - _minimum;
     final int l = Math.min(_maximum - _minimum + 1 - i, data.length);
     System.arraycopy(data, 0, _data, i, l);
+    _dataVersion++;
+    refreshSparkline();
+  }
+
+  /**
+   * Shades a band behind the data points, from the low to the high value of
+   * each. NaN leaves a point without a band.
+   */
+  public void setBand(double[] lows, double[] highs) {
+    checkWidget();
+    if (lows == null || highs == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    _bandLows = Arrays.copyOf(lows, lows.length);
+    _bandHighs = Arrays.copyOf(highs, highs.length);
+    _dataVersion++;
+    refreshSparkline();
+  }
+
+  public void clearBand() {
+    checkWidget();
+    if (_bandLows == null)
+      return;
+
+    _bandLows = null;
+    _bandHighs = null;
+    _dataVersion++;
+    refreshSparkline();
+  }
+
+  /**
+   * Draws each series as a line over the data points. NaN breaks the line.
+   */
+  public void setSeries(double[][] series) {
+    checkWidget();
+    if (series == null)
+      SWT.error(SWT.ERROR_NULL_ARGUMENT);
+
+    final double[][] copy = new double[series.length][];
+    for (int i = 0; i < series.length; i++) {
+      if (series[i] == null)
+        SWT.error(SWT.ERROR_NULL_ARGUMENT);
+      copy[i] = Arrays.copyOf(series[i], series[i].length);
+    }
+    _series = copy;
+    _dataVersion++;
     refreshSparkline();
   }
 
@@ -397,6 +452,8 @@ public final class SparklineScrollBar extends Composite {
     _left.setBackground(color);
     _track.setBackground(color);
     _right.setBackground(color);
+    if (_sparklineFigure != null)
+      _sparklineFigure.invalidateImage();
   }
 
   @Override
@@ -412,7 +469,17 @@ public final class SparklineScrollBar extends Composite {
 
   public void setSparklineColor(Color color) {
     _dataPointColor = color;
-    updateLayerColor(_sparkLineLayer, color);
+    _sparklineFigure.setColors(_dataPointColor, _bandColor, _seriesColor);
+  }
+
+  public void setBandColor(Color color) {
+    _bandColor = color;
+    _sparklineFigure.setColors(_dataPointColor, _bandColor, _seriesColor);
+  }
+
+  public void setSeriesColor(Color color) {
+    _seriesColor = color;
+    _sparklineFigure.setColors(_dataPointColor, _bandColor, _seriesColor);
   }
 
   public void setHighlightColor(Color color) {
@@ -489,7 +556,7 @@ public final class SparklineScrollBar extends Composite {
 
     final int x = computeX(_selection - _minimum);
     _thumbFigure.setLocation(new Point(x, 0));
-    _thumbFigure.setSize(Math.max(5, available.width * _thumb / computeDataPoints()), available.height);
+    _thumbFigure.setSize(Math.max(5, (int) ((long) available.width * _thumb / computeDataPoints())), available.height);
     _thumbFigure.invalidate();
   }
 
@@ -506,73 +573,16 @@ public final class SparklineScrollBar extends Composite {
   }
 
   private void refreshSparkline() {
-    resizeLayer(_sparkLineLayer, computeDataPoints(), _dataPointColor);
-
     final Rectangle available = _track.getClientArea();
     _sparkLineLayer.setSize(available.width, available.height);
 
-    final double max = Math.max(ArraySupport.max(_data), 0.0);
-    final double min = Math.min(ArraySupport.min(_data), 0.0);
-    final double range = max - min;
-
-    final double scale = (double) available.height * 0.9 / range;
-    final int origin = (int) (available.height * (max / range + 0.05));
-
-    final List<?> c = _sparkLineLayer.getChildren();
-    final IFigure[] points = c.toArray(new IFigure[] {});
-    int x = 0;
-    for (int i = 0; i < points.length; i++) {
-      final int x1 = computeX(i + 1);
-      final int width = x1 - x;
-      final int height = (int) (scale * _data[i]);
-      points[i].setVisible(height != 0 && width >= 0);
-
-      if (width <= 0)
-        continue;
-
-      final int y = origin - Math.max(height, 0);
-      final org.eclipse.draw2d.geometry.Rectangle bounds = points[i].getBounds();
-      final org.eclipse.draw2d.geometry.Rectangle newBounds = new org.eclipse.draw2d.geometry.Rectangle(x, y, width, Math.abs(height));
-      if (!bounds.equals(newBounds)) {
-        points[i].setBounds(newBounds);
-        points[i].invalidate();
-      }
-
-      x = x1;
-    }
+    _sparklineFigure.setBounds(new org.eclipse.draw2d.geometry.Rectangle(0, 0, available.width, available.height));
+    _sparklineFigure.setData(_data, _bandLows, _bandHighs, _series,
+        computeDataPoints(), _dataVersion);
   }
 
-  private double _lastError = 0.0;
-  private int _lastX = 0;
-  private int _lastIdx = 0;
-
   private int computeX(int index) {
-    if (index == _lastIdx)
-      return _lastX;
-
-    if (index < _lastIdx) {
-      _lastX = 0;
-      _lastError = 0.0;
-      _lastIdx = 0;
-    }
-
-    final Rectangle available = _track.getClientArea();
-    final double idealPointWidth = (double) available.width / (double) computeDataPoints();
-    final int pointWidth = Math.max(1, (int) idealPointWidth);
-    final double delta = idealPointWidth - pointWidth;
-
-    for (int i = _lastIdx; i < index; i++) {
-      final int width = pointWidth + (int) _lastError;
-      _lastError = _lastError + delta - (int) _lastError;
-
-      if (width <= 0)
-        continue;
-
-      _lastX += width;
-    }
-
-    _lastIdx = index;
-    return _lastX;
+    return SparklineFigure.computeX(index, computeDataPoints(), _track.getClientArea().width);
   }
 
   private int computeDataPoints() {
@@ -584,6 +594,7 @@ public final class SparklineScrollBar extends Composite {
     if (_data.length == points)
       return;
 
+    _dataVersion++;
     if (_data.length > points) {
       Arrays.fill(_data, points, _data.length, 0.0);
     }
@@ -642,6 +653,7 @@ public final class SparklineScrollBar extends Composite {
       for (int i = 0; i < _images.length; i++) {
         _images[i].dispose();
       }
+      _sparklineFigure.dispose();
     }
 
     @Override
@@ -765,7 +777,7 @@ public final class SparklineScrollBar extends Composite {
         final int points = computeDataPoints();
         final int correction = (int) (points * pct);
         setSelection(_selection + correction);
-        _startLocation.x = _track.getClientArea().width * _selection / points + _offset;
+        _startLocation.x = computeX(_selection - _minimum) + _offset;
         return;
       }
     }
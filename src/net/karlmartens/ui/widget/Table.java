@@ -17,16 +17,26 @@
  */
 package net.karlmartens.ui.widget;
 
+import static net.karlmartens.ui.widget.CellStore.ROW;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
 
-import net.karlmartens.platform.function.Criteria;
 import net.karlmartens.platform.function.Function;
-import net.karlmartens.platform.util.ArraySupport;
 import net.karlmartens.platform.util.NullSafe;
-import net.karlmartens.platform.util.NumberStringComparator;
 import net.karlmartens.ui.Images;
+import net.karlmartens.ui.util.BlendedColors;
+import net.karlmartens.ui.util.Workers;
 
 import org.eclipse.jface.action.GroupMarker;
 import org.eclipse.jface.action.IMenuManager;
@@ -53,6 +63,7 @@ import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.ScrollBar;
@@ -80,6 +91,13 @@ public final class Table extends Composite {
   public static final int SORT_NONE = 0;
   public static final int SORT_ASCENDING = 1;
 
+  private static final int VIRTUAL_CACHE_SIZE = 2048;
+  private static final int DIRTY_CELL_LIMIT = 1024;
+  private static final int ASYNCHRONOUS_THRESHOLD = 10000;
+  private static final int SORT_ATTEMPTS = 3;
+  private static final int PROVIDED_TEXT_SAMPLE_SIZE = 1024;
+  private static final TableSortKey[] NO_SORT_KEYS = new TableSortKey[0];
+
   private final TableColumnManager _columnManager;
   private final CellSelectionManager _cellSelectionManager;
 
@@ -87,8 +105,15 @@ public final class Table extends Composite {
   private final Image _imageDecending;
   private final KTableImpl _table;
   private final TableListener _listener;
+  private final boolean _virtual;
 
   private boolean _isActive = true;
+  private int _updateDepth = 0;
+  private boolean _preferredSizePending = false;
+  private boolean _redrawPending = false;
+  private final long[] _dirtyCells = new long[DIRTY_CELL_LIMIT];
+  private int _dirtyCellCount = 0;
+  private boolean _repaintScheduled = false;
   private boolean _showHeader = false;
   private int _rowHeight;
 
@@ -100,6 +125,40 @@ public final class Table extends Composite {
   private TableItem[] _items = new TableItem[0];
   private int _columnCount = 0;
   private TableColumn[] _columns = new TableColumn[0];
+  private final IndexedCellStore _cells = new IndexedCellStore(
+      new ColumnarCellStore());
+  private final ColumnFilterIndex _filters = new ColumnFilterIndex(_cells);
+  // Items by cell store row, for the filters which work in store rows
+  private TableItem[] _storeItems = new TableItem[0];
+  // Per column, the text provider and cell store version at which every item
+  // last had its text provided
+  private Object[] _providers = new Object[0];
+  private long[] _providedVersions = new long[0];
+  private final CellSelection _selection = new CellSelection();
+  // Declared before _model, whose renderers share it
+  private final BlendedColors _colors = BlendedColors.acquire(getDisplay());
+  private final RowHeightIndex _rowHeights = new RowHeightIndex();
+  private boolean _rowHeightsValid = false;
+  private final BitSet _dirtyRowHeights = new BitSet();
+  private final TileCache _tiles = new TileCache();
+  private int[] _viewRows = null;
+  private int _viewCount = 0;
+  private boolean _viewValid = true;
+  private final Map<TableItem, Boolean> _cachedItems = new LinkedHashMap<TableItem, Boolean>(
+      16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<TableItem, Boolean> eldest) {
+      if (size() <= VIRTUAL_CACHE_SIZE)
+        return false;
+
+      final TableItem item = eldest.getKey();
+      if (!item.isDisposed())
+        item.clear();
+      return true;
+    }
+  };
 
   public Table(Composite parent) {
     this(parent, SWT.V_SCROLL | SWT.H_SCROLL | SWT.MULTI);
@@ -108,6 +167,7 @@ public final class Table extends Composite {
   public Table(Composite parent, int style) {
     super(parent, checkStyle(style));
     setLayout(new FillLayout());
+    _virtual = (getStyle() & SWT.VIRTUAL) != 0;
 
     _listener = new TableListener();
     updateFontData();
@@ -174,6 +234,7 @@ public final class Table extends Composite {
   @Override
   public void setBackground(Color color) {
     super.setBackground(color);
+    _tiles.invalidate();
     _table.setBackground(color);
   }
 
@@ -186,6 +247,7 @@ public final class Table extends Composite {
   @Override
   public void setForeground(Color color) {
     super.setForeground(color);
+    _tiles.invalidate();
     _table.setForeground(color);
   }
 
@@ -207,12 +269,44 @@ public final class Table extends Composite {
   @Override
   public void redraw() {
     checkWidget();
+    _tiles.invalidate();
+    if (_updateDepth > 0) {
+      _redrawPending = true;
+      return;
+    }
+
+    _dirtyCellCount = 0;
     _table.redraw();
   }
 
+  /**
+   * Defers layout and repaint until the matching {@link #endUpdate()}. Calls
+   * may be nested. Inserting or removing items sends no events, inside the
+   * bracket or out of it.
+   */
+  public void beginUpdate() {
+    checkWidget();
+    _updateDepth++;
+  }
+
+  public void endUpdate() {
+    checkWidget();
+    if (_updateDepth == 0 || --_updateDepth > 0)
+      return;
+
+    if (_preferredSizePending)
+      updatePreferredSize();
+
+    if (_redrawPending) {
+      _redrawPending = false;
+      redraw();
+    }
+  }
+
   public void setHeaderVisible(boolean show) {
     checkWidget();
     _showHeader = show;
+    _rowHeightsValid = false;
     redraw();
   }
 
@@ -291,44 +385,22 @@ public final class Table extends Composite {
     return _itemCount;
   }
 
-  private int _lastIndexOf = -1;
-
   public int indexOf(TableItem item) {
     checkWidget();
     checkNull(item);
 
-    if (_lastIndexOf >= 1 && _lastIndexOf < _itemCount - 1) {
-      if (_items[_lastIndexOf] == item)
-        return _lastIndexOf;
-      if (_items[_lastIndexOf + 1] == item)
-        return ++_lastIndexOf;
-      if (_items[_lastIndexOf - 1] == item)
-        return --_lastIndexOf;
-    }
-
-    if (_lastIndexOf < _itemCount / 2) {
-      for (int i = 0; i < _itemCount; i++) {
-        if (_items[i] == item) {
-          _lastIndexOf = i;
-          return i;
-        }
-      }
-    } else {
-      for (int i = _itemCount - 1; i >= 0; i--) {
-        if (_items[i] == item) {
-          _lastIndexOf = i;
-          return i;
-        }
-      }
-    }
+    // Items track their own position, see reindex(int, int)
+    final int index = item.getIndex();
+    if (index < 0 || index >= _itemCount || _items[index] != item)
+      return -1;
 
-    return -1;
+    return index;
   }
 
   public TableItem getItem(int index) {
     checkWidget();
     checkRowIndex(index);
-    return _items[index];
+    return item(index);
   }
 
   public TableItem getItem(Point point) {
@@ -342,11 +414,12 @@ public final class Table extends Composite {
     if (row < 0)
       return null;
 
-    return _items[row];
+    return item(row);
   }
 
   public TableItem[] getItems() {
     checkWidget();
+    materializeItems();
     final TableItem[] items = new TableItem[_itemCount];
     System.arraycopy(_items, 0, items, 0, items.length);
     return items;
@@ -378,17 +451,7 @@ public final class Table extends Composite {
 
   public int[] getSelectionIndices() {
     checkWidget();
-
-    final BitSet selectedRows = new BitSet();
-    for (Point selection : _table.getCellSelection()) {
-      if (_showHeader
-          && selection.y < _table.getModel().getFixedHeaderRowCount())
-        continue;
-
-      selectedRows.set(computeRow(selection.y));
-    }
-
-    return ArraySupport.toArray(selectedRows);
+    return getCellSelection().getRows();
   }
 
   public TableItem[] getSelection() {
@@ -397,7 +460,7 @@ public final class Table extends Composite {
     final int[] indices = getSelectionIndices();
     final TableItem[] selected = new TableItem[indices.length];
     for (int i = 0; i < indices.length; i++) {
-      selected[i] = _items[indices[i]];
+      selected[i] = item(indices[i]);
     }
 
     return selected;
@@ -431,7 +494,9 @@ public final class Table extends Composite {
 
   public void deselectAll() {
     checkWidget();
-    _table.clearSelection();
+    invalidateTiles(_selection.getBounds());
+    _selection.clear();
+    _table.redraw();
     notifyListeners(SWT.Selection, new Event());
   }
 
@@ -458,15 +523,22 @@ public final class Table extends Composite {
     checkWidget();
     checkNull(indices);
 
-    final int width = _columnCount;
-    final Point[] selections = new Point[indices.length * width];
-    for (int i = 0; i < indices.length; i++) {
-      for (int j = 0; j < width; j++) {
-        selections[i * width + j] = new Point(j, indices[i]);
-      }
+    final int[] rows = Arrays.copyOf(indices, indices.length);
+    Arrays.sort(rows);
+
+    // The runs of consecutive rows are disjoint and in order already
+    final List<Rectangle> runs = new ArrayList<Rectangle>();
+    int start = 0;
+    for (int i = 1; i <= rows.length; i++) {
+      if (i < rows.length && rows[i] <= rows[i - 1] + 1)
+        continue;
+
+      runs.add(new Rectangle(0, rows[start], _columnCount, rows[i - 1]
+          - rows[start] + 1));
+      start = i;
     }
 
-    setCellSelections(selections);
+    setCellSelection(CellSelection.ofDisjoint(runs));
   }
 
   public void select(int[] indices) {
@@ -497,21 +569,21 @@ public final class Table extends Composite {
 
   public Point[] getCellSelections() {
     checkWidget();
-    final Point[] pts = _table.getCellSelection();
-    final Point[] selection = new Point[pts.length];
-    int index = 0;
-    for (int i = 0; i < selection.length; i++) {
-      final Point pt = pts[i];
-      final Point selectionPt = new Point(pt.x, computeRow(pt.y));
-      final TableColumn column = getColumn(selectionPt.x);
-      final TableItem item = getItem(selectionPt.y);
-      if (!column.isVisible() || !item.isVisible())
-        continue;
+    return getCellSelection().toArray();
+  }
 
-      selection[index++] = selectionPt;
+  /**
+   * Returns the selected cells that are currently shown. Cells in hidden
+   * columns and in rows removed by a filter are excluded.
+   */
+  public CellSelection getCellSelection() {
+    checkWidget();
+    // Pieces of disjoint ranges are disjoint
+    final List<Rectangle> visible = new ArrayList<Rectangle>();
+    for (Rectangle range : _selection.getRanges()) {
+      addVisibleCells(visible, range);
     }
-
-    return Arrays.copyOf(selection, index);
+    return CellSelection.ofDisjoint(visible);
   }
 
   public Point getFocusCell() {
@@ -528,32 +600,73 @@ public final class Table extends Composite {
   public void setCellSelections(Point[] selected) {
     checkWidget();
     checkNull(selected);
+    setCellSelection(CellSelection.of(selected));
+  }
 
-    final BitSet previousRows = rowSelectionSet(_table.getCellSelection());
-
-    final Point[] ktableCellSelection = new Point[selected.length];
-    int i = 0;
-    for (Point pt : selected) {
-      ktableCellSelection[i++] = new Point(pt.x, computeKTableRow(pt.y));
-    }
+  public void setCellSelection(CellSelection selected) {
+    checkWidget();
+    checkNull(selected);
 
-    _table.clearSelection();
-    _table.setSelection(ktableCellSelection, false);
+    final int[] previousRows = getSelectionIndices();
+    invalidateTiles(_selection.getBounds());
+    invalidateTiles(selected.getBounds());
+    _selection.clear();
+    _selection.add(selected);
     _table.redraw();
 
-    final BitSet currentRows = rowSelectionSet(ktableCellSelection);
-    final BitSet changedRows = (BitSet) previousRows.clone();
-    changedRows.xor(currentRows);
-    if (!changedRows.isEmpty())
+    if (!Arrays.equals(previousRows, getSelectionIndices()))
       notifyListeners(SWT.Selection, new Event());
   }
 
-  private BitSet rowSelectionSet(Point[] pts) {
-    final BitSet set = new BitSet(_itemCount + 1);
-    for (Point pt : pts) {
-      set.set(pt.y);
+  /**
+   * Drops the cached tiles holding the rows spanned by the bounds, given in
+   * model coordinates.
+   */
+  private void invalidateTiles(Rectangle bounds) {
+    if (bounds.height <= 0)
+      return;
+
+    _tiles.invalidateRows(computeKTableRow(bounds.y),
+        computeKTableRow(bounds.y + bounds.height - 1) + 1);
+  }
+
+  private void addVisibleCells(List<Rectangle> visible, Rectangle range) {
+    final Rectangle r = range.intersection(new Rectangle(0, 0, _columnCount,
+        _itemCount));
+    if (r.width <= 0 || r.height <= 0)
+      return;
+
+    final int right = r.x + r.width;
+    final int bottom = r.y + r.height;
+    updateView();
+    for (int x = r.x; x < right;) {
+      if (!_columns[x].isVisible()) {
+        x++;
+        continue;
+      }
+
+      int end = x + 1;
+      while (end < right && _columns[end].isVisible()) {
+        end++;
+      }
+
+      if (_viewRows == null) {
+        visible.add(new Rectangle(x, r.y, end - x, r.height));
+      } else {
+        int view = toViewIndex(r.y);
+        while (view < _viewCount && _viewRows[view] < bottom) {
+          final int start = _viewRows[view];
+          view++;
+          while (view < _viewCount && _viewRows[view] < bottom
+              && _viewRows[view] == _viewRows[view - 1] + 1) {
+            view++;
+          }
+          visible.add(new Rectangle(x, start, end - x, _viewRows[view - 1]
+              - start + 1));
+        }
+      }
+      x = end;
     }
-    return set;
   }
 
   public void showSelection() {
@@ -574,15 +687,17 @@ public final class Table extends Composite {
       return;
 
     final Rectangle r = getVisibleScrollableCells();
-    if (r.y <= index && (r.y + r.height) > index)
+    final int top = toViewIndex(r.y);
+    final int view = toViewIndex(index);
+    if (top <= view && (top + r.height) > view)
       return;
 
-    if (index < r.y) {
+    if (view < top) {
       scroll(new Point(r.x, index));
       return;
     }
 
-    scroll(new Point(r.x, index - r.height + 1));
+    scroll(new Point(r.x, getModelIndex(Math.max(0, view - r.height + 1))));
   }
 
   public void showColumn(int index) {
@@ -611,6 +726,21 @@ public final class Table extends Composite {
     _table.scroll(cell.x, computeKTableRow(cell.y));
   }
 
+  /**
+   * Scrolls the column to the left edge of the scrollable cells and keeps the
+   * rows in view. Unlike {@link #scroll(Point)} this does not need the visible
+   * cells, so it is cheap enough to follow a dragged scroll bar.
+   */
+  public void scrollToColumn(int index) {
+    checkWidget();
+    checkColumnIndex(index);
+
+    if (index == _table.leftColumn())
+      return;
+
+    _table.scroll(index, _table.topRow());
+  }
+
   public void setItemCount(int count) {
     checkWidget();
     final int c = Math.max(0, count);
@@ -618,16 +748,27 @@ public final class Table extends Composite {
       return;
 
     if (c > _itemCount) {
-      for (int i = _itemCount; i < c; i++) {
-        new TableItem(this, i);
+      if (_virtual) {
+        // Items are created on demand, see item(int)
+        if (_items.length < c)
+          _items = Arrays.copyOf(_items, c);
+        _itemCount = c;
+        setSortIndicator(NO_SORT_KEYS);
+        updatePreferredSize();
+        redraw();
+        return;
       }
+
+      insertItems(_itemCount, c - _itemCount);
       return;
     }
 
     for (int i = c; i < _itemCount; i++) {
       final TableItem item = _items[i];
-      if (item != null && !item.isDisposed())
+      if (item != null && !item.isDisposed()) {
+        _cachedItems.remove(item);
         item.release();
+      }
       _items[i] = null;
     }
 
@@ -656,11 +797,12 @@ public final class Table extends Composite {
       return;
     }
 
+    cancelSort();
     for (int i = c; i < _columnCount; i++) {
       final TableColumn column = _columns[i];
       if (column != null && !column.isDisposed()) {
-        if (i == _lastSortColumnIndex)
-          setSortIndicator(-1, SORT_NONE);
+        if (isSortColumn(i))
+          setSortIndicator(NO_SORT_KEYS);
 
         column.release();
       }
@@ -683,9 +825,9 @@ public final class Table extends Composite {
     if (start < 0 || start > end || end >= _itemCount)
       SWT.error(SWT.ERROR_INVALID_RANGE);
 
-    for (int i = end; i >= start; i--) {
-      doRemove(i);
-    }
+    final BitSet rows = new BitSet(end + 1);
+    rows.set(start, end + 1);
+    doRemove(rows);
     redraw();
   }
 
@@ -695,21 +837,51 @@ public final class Table extends Composite {
     if (indices.length == 0)
       return;
 
-    final int[] idxs = new int[indices.length];
-    System.arraycopy(indices, 0, idxs, 0, idxs.length);
-    Arrays.sort(idxs);
-    for (int i = idxs.length - 1; i >= 0; i--) {
-      doRemove(idxs[i]);
+    final BitSet rows = new BitSet(_itemCount);
+    for (int index : indices) {
+      checkRowIndex(index);
+      rows.set(index);
+    }
+    doRemove(rows);
+    redraw();
+  }
+
+  /**
+   * Inserts <code>count</code> items at <code>index</code> with a single shift
+   * of the existing rows. Virtual tables create the items on demand.
+   */
+  public void insertItems(int index, int count) {
+    checkWidget();
+    if (index < 0 || index > _itemCount || count < 0)
+      SWT.error(SWT.ERROR_INVALID_RANGE);
+
+    if (count == 0)
+      return;
+
+    ensureItemCapacity(_itemCount + count);
+    System.arraycopy(_items, index, _items, index + count, _itemCount - index);
+    Arrays.fill(_items, index, index + count, null);
+    _itemCount += count;
+    if (!_virtual) {
+      for (int i = index; i < index + count; i++) {
+        _items[i] = new TableItem(this, i, false);
+      }
     }
+
+    reindex(index + count, _itemCount);
+    setSortIndicator(NO_SORT_KEYS);
+    updatePreferredSize();
     redraw();
   }
 
   public void removeAll() {
     checkWidget();
     for (int i = 0; i < _itemCount; i++) {
-      _items[i].release();
+      if (_items[i] != null)
+        _items[i].release();
       _items[i] = null;
     }
+    _cachedItems.clear();
     _itemCount = 0;
     updatePreferredSize();
     redraw();
@@ -719,17 +891,23 @@ public final class Table extends Composite {
     checkWidget();
     checkRowIndex(index);
 
-    _items[index].clear();
-    setSortIndicator(-1, SORT_NONE);
+    final TableItem item = _items[index];
+    if (item != null) {
+      _cachedItems.remove(item);
+      item.clear();
+    }
+    setSortIndicator(NO_SORT_KEYS);
     redraw();
   }
 
   public void clearAll() {
     checkWidget();
     for (int i = 0; i < _itemCount; i++) {
-      _items[i].clear();
+      if (_items[i] != null)
+        _items[i].clear();
     }
-    setSortIndicator(-1, SORT_NONE);
+    _cachedItems.clear();
+    setSortIndicator(NO_SORT_KEYS);
     redraw();
   }
 
@@ -743,18 +921,21 @@ public final class Table extends Composite {
     if (!_columns[fromIndex].isMoveable() || !_columns[toIndex].isMoveable())
       return;
 
+    // The keys of a pending sort refer to the old column order
+    cancelSort();
     final TableColumn t = _columns[fromIndex];
     _columns[fromIndex] = _columns[toIndex];
     _columns[toIndex] = t;
 
-    for (int i = 0; i < _itemCount; i++) {
-      _items[i].swapColumns(fromIndex, toIndex);
-    }
+    _cells.swapColumns(fromIndex, toIndex);
 
-    if (_lastSortColumnIndex == fromIndex) {
-      _lastSortColumnIndex = toIndex;
-    } else if (_lastSortColumnIndex == toIndex) {
-      _lastSortColumnIndex = fromIndex;
+    for (int i = 0; i < _sortKeys.length; i++) {
+      final int index = _sortKeys[i].getColumnIndex();
+      if (index == fromIndex) {
+        _sortKeys[i] = _sortKeys[i].withColumnIndex(toIndex);
+      } else if (index == toIndex) {
+        _sortKeys[i] = _sortKeys[i].withColumnIndex(fromIndex);
+      }
     }
 
     _columns[fromIndex].notifyListeners(SWT.Move, new Event());
@@ -766,40 +947,454 @@ public final class Table extends Composite {
   public void sort(int index) {
     checkWidget();
     checkColumnIndex(index);
+    sort(toggleSortKeys(index), _asynchronous, 0);
+  }
+
+  /**
+   * Sorts as {@link #sort(int)} does, but leaves sorting a large table to a
+   * background thread whether or not the table is asynchronous. Header clicks
+   * sort this way.
+   */
+  void requestSort(int index) {
+    checkWidget();
+    checkColumnIndex(index);
+    sort(toggleSortKeys(index), true, 0);
+  }
+
+  /**
+   * Sorts as {@link #sort(TableSortKey[])} does, in the background for a large
+   * table like {@link #requestSort(int)}.
+   */
+  void requestSort(TableSortKey[] keys) {
+    checkWidget();
+    checkNull(keys);
+    sort(keys, true, 0);
+  }
+
+  public void sort(int index, int direction) {
+    checkWidget();
+    sort(new TableSortKey[] { new TableSortKey(index, direction) });
+  }
+
+  /**
+   * Sorts the items by the given keys, the first key being the most
+   * significant. Items that compare equal keep their relative order. While the
+   * sort is in effect, an item whose text changes in one of the sort columns
+   * is moved to its sorted position.
+   * <p>
+   * Virtual tables are not sorted. Their items are in the order of the
+   * indices their data is requested for, so sort their model instead, for
+   * example with a viewer comparator.
+   */
+  public void sort(TableSortKey[] keys) {
+    checkWidget();
+    checkNull(keys);
+    sort(keys, _asynchronous, 0);
+  }
+
+  private TableSortKey[] toggleSortKeys(int index) {
+    final TableSortKey[] keys = getRequestedSortKeys();
+    final int direction = keys.length > 0 && keys[0].getColumnIndex() == index
+        ? keys[0].getDirection() * -1 : SORT_ASCENDING;
+    return new TableSortKey[] { new TableSortKey(index, direction) };
+  }
+
+  private void sort(TableSortKey[] keys, boolean asynchronous, int attempt) {
+    final BitSet columns = new BitSet();
+    for (TableSortKey key : keys) {
+      checkNull(key);
+      checkColumnIndex(key.getColumnIndex());
+      if (key.getDirection() != SORT_ASCENDING
+          && key.getDirection() != SORT_DESCENDING)
+        SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+
+      if (columns.get(key.getColumnIndex()))
+        SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+      columns.set(key.getColumnIndex());
+    }
+
+    // Reading the keys would request the data of every item, and the data
+    // is requested by position in the model, not in the sorted table
+    if (_virtual)
+      return;
+
+    // A newer request supersedes the one in progress
+    cancelSort();
+
+    if (keys.length == 0) {
+      setSortIndicator(NO_SORT_KEYS);
+      return;
+    }
 
     final int firstRow = Math.max(0, Math.min(_fixedRowCount, _items.length));
     if (_itemCount <= firstRow + 1)
       return;
 
-    if (index != _lastSortColumnIndex || _lastSortDirection == SORT_NONE) {
-      sort(index, SORT_ASCENDING);
+    materializeItems();
+    final TableItem[] items = Arrays.copyOfRange(_items, firstRow, _itemCount);
+    final String[][] texts = new String[keys.length][items.length];
+    for (int k = 0; k < keys.length; k++) {
+      final int index = keys[k].getColumnIndex();
+      final String[] column = texts[k];
+      for (int i = 0; i < column.length; i++) {
+        column[i] = items[i].getText(index);
+      }
+    }
+
+    if (asynchronous && _itemCount > ASYNCHRONOUS_THRESHOLD) {
+      sortInBackground(keys, firstRow, items, texts, attempt);
       return;
     }
 
-    sort(index, _lastSortDirection * -1);
+    commitSort(keys, firstRow, items, TableSorter.sort(texts, keys), null);
   }
 
-  public void sort(int index, int direction) {
-    checkWidget();
-    checkColumnIndex(index);
-    if (direction != SORT_ASCENDING && direction != SORT_DESCENDING)
-      SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+  /**
+   * Sorts the extracted keys on the background thread and commits the order
+   * on the UI thread, unless a newer request superseded this one. Items whose
+   * sort texts changed in the meantime are merged into the committed order.
+   * When items were added or removed the sort is requested again, at most
+   * {@link #SORT_ATTEMPTS} times in the background.
+   */
+  private void sortInBackground(final TableSortKey[] keys, final int firstRow,
+      final TableItem[] items, final String[][] texts, final int attempt) {
+    final int request = _sortRequest;
+    final Display display = getDisplay();
+    _pendingSortKeys = Arrays.copyOf(keys, keys.length);
+    _table.redraw();
+    _pendingSort = Workers.getBackgroundExecutor().submit(new Runnable() {
+      @Override
+      public void run() {
+        int[] order = null;
+        try {
+          order = TableSorter.sort(texts, keys);
+        } catch (CancellationException e) {
+          return;
+        } catch (RuntimeException e) {
+          if (Thread.currentThread().isInterrupted())
+            return;
 
-    final int firstRow = Math.max(0, Math.min(_fixedRowCount, _items.length));
-    if (_itemCount <= firstRow + 1)
+          // Thrown on the UI thread it would escape the event loop
+          final Thread thread = Thread.currentThread();
+          thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+
+        final int[] result = order;
+        if (display.isDisposed())
+          return;
+
+        display.asyncExec(new Runnable() {
+          @Override
+          public void run() {
+            if (isDisposed() || request != _sortRequest)
+              return;
+
+            finishSort();
+            if (result == null)
+              return;
+
+            if (!isCurrent(items, firstRow)) {
+              final int next = attempt + 1;
+              sort(keys, next < SORT_ATTEMPTS, next);
+              return;
+            }
+
+            commitSort(keys, firstRow, items, result, changedItems(items,
+                keys, texts));
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Returns whether the table holds the same items below the fixed rows, in
+   * any order.
+   */
+  private boolean isCurrent(TableItem[] items, int firstRow) {
+    if (_itemCount - firstRow != items.length)
+      return false;
+
+    for (TableItem item : items) {
+      if (item.isDisposed())
+        return false;
+
+      final int index = item.getIndex();
+      if (index < firstRow || index >= _itemCount || _items[index] != item)
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the positions of the items whose sort texts no longer match the
+   * extracted ones.
+   */
+  private static BitSet changedItems(TableItem[] items, TableSortKey[] keys,
+      String[][] texts) {
+    final BitSet changed = new BitSet();
+    for (int k = 0; k < keys.length; k++) {
+      final int index = keys[k].getColumnIndex();
+      for (int i = 0; i < items.length; i++) {
+        if (!NullSafe.equals(texts[k][i], items[i].getText(index)))
+          changed.set(i);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Drops the sort running in the background, if any.
+   */
+  private void cancelSort() {
+    _sortRequest++;
+    if (_pendingSort == null)
       return;
 
+    _pendingSort.cancel(true);
+    finishSort();
+  }
+
+  private void finishSort() {
+    _pendingSort = null;
+    _pendingSortKeys = NO_SORT_KEYS;
+    _table.redraw();
+  }
+
+  /**
+   * Puts the items in the given order below the fixed rows.
+   *
+   * @param changed
+   *          positions of the items whose sort texts changed after the order
+   *          was computed, or <code>null</code>; they are taken out of the
+   *          order and merged back in by their current texts
+   */
+  private void commitSort(final TableSortKey[] keys, int firstRow,
+      TableItem[] items, int[] order, BitSet changed) {
+    TableItem[] sorted = new TableItem[order.length];
+    for (int i = 0; i < order.length; i++) {
+      sorted[i] = items[order[i]];
+    }
+
+    if (changed != null && !changed.isEmpty()) {
+      final TableItem[] moved = new TableItem[changed.cardinality()];
+      final TableItem[] kept = new TableItem[sorted.length - moved.length];
+      int m = 0;
+      int k = 0;
+      for (int i = 0; i < order.length; i++) {
+        if (changed.get(order[i])) {
+          moved[m++] = sorted[i];
+        } else {
+          kept[k++] = sorted[i];
+        }
+      }
+
+      final Comparator<TableItem> comparator = new Comparator<TableItem>() {
+        @Override
+        public int compare(TableItem o1, TableItem o2) {
+          return TableSorter.compare(o1, o2, keys);
+        }
+      };
+      Arrays.sort(moved, comparator);
+      sorted = merge(kept, moved, comparator);
+    }
+
     final TableItem[] newItems = Arrays.copyOf(_items, _items.length);
-    final Comparator<TableItem> comparator = new TableItemComparator(
-        new NumberStringComparator(), index, direction);
-    Arrays.sort(newItems, firstRow, _itemCount, comparator);
+    System.arraycopy(sorted, 0, newItems, firstRow, sorted.length);
 
     _items = newItems;
-    setSortIndicator(index, direction);
+    reindex(firstRow, _itemCount);
+    _rowHeightsValid = false;
+    _viewValid = false;
+    setSortIndicator(Arrays.copyOf(keys, keys.length));
     notifyListeners(SWT.Selection, new Event());
     redraw();
   }
 
+  private static TableItem[] merge(TableItem[] first, TableItem[] second,
+      Comparator<TableItem> comparator) {
+    final TableItem[] merged = new TableItem[first.length + second.length];
+    int f = 0;
+    int s = 0;
+    for (int i = 0; i < merged.length; i++) {
+      if (s == second.length || f < first.length
+          && comparator.compare(first[f], second[s]) <= 0) {
+        merged[i] = first[f++];
+      } else {
+        merged[i] = second[s++];
+      }
+    }
+    return merged;
+  }
+
+  public TableSortKey[] getSortKeys() {
+    checkWidget();
+    return Arrays.copyOf(_sortKeys, _sortKeys.length);
+  }
+
+  /**
+   * Returns the keys of the sort running in the background, or the keys in
+   * effect when there is none.
+   */
+  TableSortKey[] getRequestedSortKeys() {
+    final TableSortKey[] keys = _pendingSort != null ? _pendingSortKeys
+        : _sortKeys;
+    return Arrays.copyOf(keys, keys.length);
+  }
+
+  /**
+   * When set, sorting or filtering more than a few thousand items returns at
+   * once and leaves the work to a background thread. It is not set by
+   * default, so that callers find the items in order when a sort returns;
+   * header clicks sort in the background either way.
+   * {@link #sort(TableSortKey[])} extracts the sort keys first. Column value
+   * filters are evaluated against a copy of the texts of their column; other
+   * filters read the items and are always evaluated at once. The result is
+   * applied later on the UI thread, and the sort sends a Selection event
+   * then.
+   */
+  public void setAsynchronous(boolean asynchronous) {
+    checkWidget();
+    _asynchronous = asynchronous;
+  }
+
+  public boolean isAsynchronous() {
+    checkWidget();
+    return _asynchronous;
+  }
+
+  /**
+   * Returns whether a sort or filter is running in the background.
+   */
+  public boolean isBusy() {
+    checkWidget();
+    return _pendingSort != null || _pendingFilter != null;
+  }
+
+  /**
+   * Returns up to <code>limit</code> distinct texts of the column in
+   * ascending order, starting after <code>after</code>, or from the first one
+   * when it is <code>null</code>.
+   */
+  String[] getDistinctValues(int column, String after, int limit) {
+    checkWidget();
+    checkColumnIndex(column);
+    provideTexts(column);
+    return _cells.getValues(column, after, limit);
+  }
+
+  /**
+   * Returns the <code>count</code> items with the largest texts in the column,
+   * in table order. Of the items sharing the smallest of those texts the last
+   * ones are taken, items without text make up any shortfall.
+   */
+  TableItem[] getTopItems(int column, int count) {
+    checkWidget();
+    checkColumnIndex(column);
+    provideTexts(column);
+
+    final Set<String> included = new HashSet<String>();
+    String threshold = null;
+    int thresholdCount = 0;
+    int remaining = Math.min(count, _itemCount);
+    for (Entry<String, Integer> entry : _cells.getLargestValues(column,
+        remaining).entrySet()) {
+      if (entry.getValue() >= remaining) {
+        threshold = entry.getKey();
+        thresholdCount = remaining;
+        remaining = 0;
+        break;
+      }
+
+      included.add(entry.getKey());
+      remaining -= entry.getValue();
+    }
+
+    final BitSet selected = new BitSet(_itemCount);
+    for (int i = _itemCount - 1; i >= 0; i--) {
+      final TableItem item = _items[i];
+      final String text = item == null ? null : _cells.getText(
+          item.getStoreRow(), column);
+      if (text == null) {
+        if (remaining > 0) {
+          selected.set(i);
+          remaining--;
+        }
+      } else if (included.contains(text)) {
+        selected.set(i);
+      } else if (thresholdCount > 0 && text.equals(threshold)) {
+        selected.set(i);
+        thresholdCount--;
+      }
+    }
+
+    final TableItem[] items = new TableItem[selected.cardinality()];
+    int next = 0;
+    for (int i = selected.nextSetBit(0); i >= 0; i = selected
+        .nextSetBit(i + 1)) {
+      items[next++] = item(i);
+    }
+    return items;
+  }
+
+  /**
+   * Returns, for each of the columns, the longest texts per font ordered from
+   * longest to shortest, at most <code>limit</code> of them. The cells are
+   * scanned on the worker threads. When <code>sampleSize</code> is positive
+   * and smaller than the item count, only that many evenly spaced items are
+   * scanned. Items of a virtual table that have not been requested yet are
+   * skipped. Cells of a column with a text provider that have no text yet
+   * are only measured for up to {@link #PROVIDED_TEXT_SAMPLE_SIZE} evenly
+   * spaced items, since the provider runs on the UI thread; those texts are
+   * not kept.
+   */
+  public List<Map<Font, String[]>> getLongestTexts(int[] columns, int limit,
+      int sampleSize) {
+    checkWidget();
+    checkNull(columns);
+    for (int column : columns) {
+      checkColumnIndex(column);
+    }
+    if (limit <= 0)
+      SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+
+    final int count = sampleSize > 0 ? Math.min(sampleSize, _itemCount)
+        : _itemCount;
+    final TableItem[] items = new TableItem[count];
+    final int[] rows = new int[count];
+    int size = 0;
+    for (int i = 0; i < count; i++) {
+      final TableItem item = _items[(int) ((long) i * _itemCount / count)];
+      if (item == null)
+        continue;
+
+      items[size] = item;
+      rows[size++] = item.getStoreRow();
+    }
+
+    final List<Map<Font, String[]>> longest = ColumnTextScanner.scan(_cells,
+        Arrays.copyOf(rows, size), columns, getFont(), limit);
+
+    final int sampled = Math.min(size, PROVIDED_TEXT_SAMPLE_SIZE);
+    final int[] sampleRows = new int[sampled];
+    final String[] texts = new String[sampled];
+    for (int c = 0; c < columns.length; c++) {
+      final int column = columns[c];
+      if (sampled == 0 || _columns[column].getTextProvider() == null)
+        continue;
+
+      for (int i = 0; i < sampled; i++) {
+        final TableItem item = items[(int) ((long) i * size / sampled)];
+        sampleRows[i] = item.getStoreRow();
+        texts[i] = _cells.getText(sampleRows[i], column) == null ? computeText(
+            item, column) : null;
+      }
+      ColumnTextScanner.offer(longest.get(c), _cells, sampleRows, texts,
+          column, getFont(), limit);
+    }
+    return longest;
+  }
+
   private IMenuManager _menuManager;
 
   public IMenuManager getMenuManager() {
@@ -846,23 +1441,174 @@ public final class Table extends Composite {
     _cellSelectionManager.retainSelection(r);
   }
 
+  int getViewItemCount() {
+    updateView();
+    return _viewCount;
+  }
+
+  /**
+   * Returns the position of the item in the filtered view, or
+   * <code>(-(insertion point) - 1)</code> when the item is filtered out.
+   */
+  int getViewIndex(int index) {
+    updateView();
+    if (_viewRows == null || index < 0)
+      return index;
+
+    return Arrays.binarySearch(_viewRows, 0, _viewCount, index);
+  }
+
+  int getModelIndex(int viewIndex) {
+    updateView();
+    if (_viewRows == null || viewIndex < 0)
+      return viewIndex;
+
+    if (viewIndex >= _viewCount)
+      return _itemCount + viewIndex - _viewCount;
+
+    return _viewRows[viewIndex];
+  }
+
   void updateFilteredItems() {
-    Function<TableItem, Boolean> filter = Criteria.all();
+    // Filtering reads every item, which would request the data of all of
+    // them, see TableColumn#setFilter
+    if (_virtual)
+      return;
+
+    // A newer filter supersedes the one in progress
+    cancelFilter();
+
+    materializeItems();
     for (int i = 0; i < _columnCount; i++) {
-      final Function<TableItem,Boolean> oFilter = _columns[i].getFilter();
-      if (oFilter == null)
-        continue;
+      if (_columns[i].getFilter() != null)
+        provideTexts(i);
+    }
 
-      filter = Criteria.and(filter, oFilter);
+    if (_asynchronous && _itemCount > ASYNCHRONOUS_THRESHOLD) {
+      final ColumnFilterIndex.Evaluation evaluation = _filters.prepare(
+          _columns, _columnCount);
+      if (evaluation != null) {
+        filterInBackground(evaluation);
+        return;
+      }
     }
 
-    for (int i = 0; i < _itemCount; i++) {
-      final TableItem item = _items[i];
-      item.setVisible(i < getFixedRowCount() || filter.apply(item));
+    applyFilters(new BitSet());
+  }
+
+  /**
+   * Evaluates the filters on the background thread and applies them on the
+   * UI thread, unless a newer filter superseded them. Filters or cells that
+   * changed in the meantime are evaluated again as they are applied.
+   */
+  private void filterInBackground(
+      final ColumnFilterIndex.Evaluation evaluation) {
+    final int request = _filterRequest;
+    final Display display = getDisplay();
+    _pendingFilterColumns = evaluation.getColumns();
+    _table.redraw();
+    _pendingFilter = Workers.getBackgroundExecutor().submit(new Runnable() {
+      @Override
+      public void run() {
+        boolean failed = false;
+        try {
+          evaluation.run();
+        } catch (CancellationException e) {
+          return;
+        } catch (RuntimeException e) {
+          if (Thread.currentThread().isInterrupted())
+            return;
+          failed = true;
+        }
+
+        final boolean evaluated = !failed;
+        if (display.isDisposed())
+          return;
+
+        display.asyncExec(new Runnable() {
+          @Override
+          public void run() {
+            if (isDisposed() || request != _filterRequest)
+              return;
+
+            finishFilter();
+            applyFilters(evaluated ? _filters.commit(evaluation, _columns,
+                _columnCount) : new BitSet());
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Drops the filter running in the background, if any.
+   */
+  private void cancelFilter() {
+    _filterRequest++;
+    if (_pendingFilter == null)
+      return;
+
+    _pendingFilter.cancel(true);
+    finishFilter();
+  }
+
+  private void finishFilter() {
+    _pendingFilter = null;
+    _pendingFilterColumns = new BitSet();
+    _table.redraw();
+  }
+
+  /**
+   * Brings the filters up to date and shows or hides the items whose
+   * rejection changed.
+   *
+   * @param changed
+   *          store rows already known to have changed
+   */
+  private void applyFilters(BitSet changed) {
+    // Only the cells that were shown survive a filter change
+    final CellSelection selection = getCellSelection();
+
+    changed.or(_filters.update(_columns, _columnCount, _storeItems,
+        !_virtual));
+    final int fixedRows = getFixedRowCount();
+    final int[] flipped = new int[changed.cardinality()];
+    int count = 0;
+    for (int row = changed.nextSetBit(0); row >= 0
+        && row < _storeItems.length; row = changed.nextSetBit(row + 1)) {
+      final TableItem item = _storeItems[row];
+      if (item == null)
+        continue;
+
+      final boolean visible = item.getIndex() < fixedRows
+          || !_filters.isRejected(row);
+      if (visible == item.isVisible())
+        continue;
+
+      item.setVisible(visible);
+      flipped[count++] = item.getIndex();
     }
+
+    updateView(flipped, count);
+    _selection.clear();
+    _selection.add(selection);
     redraw();
   }
 
+  void registerItem(TableItem item) {
+    final int row = item.getStoreRow();
+    if (row >= _storeItems.length)
+      _storeItems = Arrays.copyOf(_storeItems, Math.max(row + 1,
+          _storeItems.length * 3 / 2));
+    _storeItems[row] = item;
+  }
+
+  void unregisterItem(TableItem item) {
+    final int row = item.getStoreRow();
+    if (row < _storeItems.length && _storeItems[row] == item)
+      _storeItems[row] = null;
+  }
+
   void createItem(TableColumn item, int index) {
     checkWidget();
     if (index < 0 || index > _columnCount)
@@ -878,8 +1624,12 @@ public final class Table extends Composite {
         - index);
     _columns[index] = item;
 
-    if (index == _lastSortColumnIndex)
-      _lastSortColumnIndex++;
+    cancelSort();
+    for (int i = 0; i < _sortKeys.length; i++) {
+      final int sortIndex = _sortKeys[i].getColumnIndex();
+      if (sortIndex >= index)
+        _sortKeys[i] = _sortKeys[i].withColumnIndex(sortIndex + 1);
+    }
 
     updatePreferredSize();
   }
@@ -889,16 +1639,11 @@ public final class Table extends Composite {
     if (index < 0 || index > _itemCount)
       SWT.error(SWT.ERROR_INVALID_RANGE);
 
-    if (_items.length == _itemCount) {
-      final int length = Math.max(4, _items.length * 3 / 2);
-      final TableItem[] newItems = new TableItem[length];
-      System.arraycopy(_items, 0, newItems, 0, _items.length);
-      _items = newItems;
-    }
-
+    ensureItemCapacity(_itemCount + 1);
     System.arraycopy(_items, index, _items, index + 1, _itemCount++ - index);
     _items[index] = item;
-    setSortIndicator(-1, SORT_NONE);
+    reindex(index, _itemCount);
+    setSortIndicator(NO_SORT_KEYS);
     updatePreferredSize();
   }
 
@@ -956,40 +1701,236 @@ public final class Table extends Composite {
     return r;
   }
 
-  Composite getTableComposite() {
-    checkWidget();
-    return _table;
+  CellStore getCellStore() {
+    return _cells;
   }
 
-  private Image _previousSortImage = null;
-  private int _lastSortColumnIndex = -1;
-  private int _lastSortDirection = SORT_NONE;
+  String computeText(TableItem item, int index) {
+    if (index < 0 || index >= _columnCount)
+      return null;
+
+    final Function<TableItem, String> provider = _columns[index]
+        .getTextProvider();
+    if (provider == null)
+      return null;
+
+    return provider.apply(item);
+  }
+
+  /**
+   * Has the text provider of the column, if any, produce the texts the items
+   * do not have yet, for the scans that read the cell store directly.
+   */
+  private void provideTexts(int column) {
+    final Function<TableItem, String> provider = _columns[column]
+        .getTextProvider();
+    if (provider == null)
+      return;
 
-  void setSortIndicator(int index, int direction) {
-    if (_lastSortColumnIndex >= 0 && _lastSortColumnIndex < _columnCount) {
-      final TableColumn column = getColumn(_lastSortColumnIndex);
-      column.setImage(_previousSortImage);
+    // Provided texts only fill empty cells, which leaves the version alone,
+    // so the column stays complete until the version changes
+    final long version = _cells.getVersion(column);
+    if (column < _providers.length && _providers[column] == provider
+        && _providedVersions[column] == version)
+      return;
+
+    for (int i = 0; i < _itemCount; i++) {
+      final TableItem item = _items[i];
+      if (item != null)
+        item.getText(column);
     }
 
-    _previousSortImage = null;
-    _lastSortColumnIndex = -1;
-    _lastSortDirection = SORT_NONE;
-    if (index < 0 || index >= _columnCount
-        || (direction != SORT_ASCENDING && direction != SORT_DESCENDING))
+    if (column >= _providers.length) {
+      final int length = Math.max(column + 1, _providers.length * 2);
+      _providers = Arrays.copyOf(_providers, length);
+      _providedVersions = Arrays.copyOf(_providedVersions, length);
+    }
+    _providers[column] = provider;
+    _providedVersions[column] = version;
+  }
+
+  boolean isVirtual() {
+    return _virtual;
+  }
+
+  void checkData(TableItem item) {
+    if (!_virtual || _cachedItems.get(item) != null)
       return;
 
-    final TableColumn column = getColumn(index);
-    _previousSortImage = column.getImage();
-    _lastSortColumnIndex = index;
-    _lastSortDirection = direction;
+    _cachedItems.put(item, Boolean.TRUE);
 
-    final Image indicator;
-    if (direction == SORT_ASCENDING) {
-      indicator = _imageAscending;
-    } else {
-      indicator = _imageDecending;
+    final Event e = new Event();
+    e.item = item;
+    e.index = indexOf(item);
+    final boolean populating = _populating;
+    _populating = true;
+    try {
+      notifyListeners(SWT.SetData, e);
+    } finally {
+      _populating = populating;
+    }
+  }
+
+  void updateSortPosition(TableItem item, int column) {
+    if (_populating || !isSortColumn(column))
+      return;
+
+    final int firstRow = Math.max(0, Math.min(_fixedRowCount, _items.length));
+    final int index = indexOf(item);
+    if (index < firstRow)
+      return;
+
+    final TableSortKey[] keys = _sortKeys;
+    if ((index == firstRow || TableSorter.compare(_items[index - 1], item,
+        keys) <= 0)
+        && (index == _itemCount - 1 || TableSorter.compare(item,
+            _items[index + 1], keys) <= 0))
+      return;
+
+    System.arraycopy(_items, index + 1, _items, index, _itemCount - index - 1);
+
+    int low = firstRow;
+    int high = _itemCount - 1;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (TableSorter.compare(_items[mid], item, keys) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    System.arraycopy(_items, low, _items, low + 1, _itemCount - low - 1);
+    _items[low] = item;
+    reindex(Math.min(index, low), Math.max(index, low) + 1);
+    moveRowHeight(index, low);
+    moveInView(index, low);
+
+    // The selection and focus follow the rows they were on
+    boolean moved = _selection.moveRow(index, low);
+    moved |= _cellSelectionManager.moveRow(index, low);
+    redraw();
+    if (moved)
+      notifyListeners(SWT.Selection, new Event());
+  }
+
+  /**
+   * Follows an item moved from one model index to another in the row height
+   * index, shifting the rows in between by one.
+   */
+  private void moveRowHeight(int from, int to) {
+    if (!_rowHeightsValid)
+      return;
+
+    final int height = _rowHeights.get(from);
+    final boolean dirty = _dirtyRowHeights.get(from);
+    final int step = from < to ? 1 : -1;
+    for (int i = from; i != to; i += step) {
+      _rowHeights.set(i, _rowHeights.get(i + step));
+      _dirtyRowHeights.set(i, _dirtyRowHeights.get(i + step));
+    }
+    _rowHeights.set(to, height);
+    _dirtyRowHeights.set(to, dirty);
+  }
+
+  /**
+   * Records a cell, or the whole row for {@link CellStore#ROW}, to be
+   * repainted once the current event has been handled.
+   */
+  void redraw(TableItem item, int column) {
+    // Cells populated on demand are being painted already
+    if (_populating)
+      return;
+
+    if (_dirtyCellCount < DIRTY_CELL_LIMIT) {
+      final int index = indexOf(item);
+      if (index < 0)
+        return;
+
+      // Row major key so that sorting groups the cells of a row
+      _dirtyCells[_dirtyCellCount] = ((long) index << 32) | (column - ROW);
+    }
+
+    // Past the limit a full redraw is cheaper
+    _dirtyCellCount = Math.min(_dirtyCellCount + 1, DIRTY_CELL_LIMIT + 1);
+
+    if (_repaintScheduled)
+      return;
+
+    _repaintScheduled = true;
+    getDisplay().asyncExec(new Runnable() {
+      @Override
+      public void run() {
+        _repaintScheduled = false;
+        if (!isDisposed())
+          repaintDirtyCells();
+      }
+    });
+  }
+
+  void invalidateRowHeight(TableItem item) {
+    item.setHeight(-1);
+    if (!_rowHeightsValid)
+      return;
+
+    final int index = indexOf(item);
+    if (index >= 0)
+      _dirtyRowHeights.set(index);
+  }
+
+  Composite getTableComposite() {
+    checkWidget();
+    return _table;
+  }
+
+  private Image[] _previousSortImages = new Image[0];
+  private TableSortKey[] _sortKeys = NO_SORT_KEYS;
+  private boolean _asynchronous = false;
+  private int _sortRequest = 0;
+  private Future<?> _pendingSort;
+  private int _filterRequest = 0;
+  private Future<?> _pendingFilter;
+  private BitSet _pendingFilterColumns = new BitSet();
+  private TableSortKey[] _pendingSortKeys = NO_SORT_KEYS;
+  private boolean _populating = false;
+
+  private void setSortIndicator(TableSortKey[] keys) {
+    for (int i = 0; i < _sortKeys.length; i++) {
+      final int index = _sortKeys[i].getColumnIndex();
+      if (index >= 0 && index < _columnCount)
+        getColumn(index).setImage(_previousSortImages[i]);
+    }
+
+    _sortKeys = keys;
+    _previousSortImages = new Image[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      final TableColumn column = getColumn(keys[i].getColumnIndex());
+      _previousSortImages[i] = column.getImage();
+
+      final Image indicator;
+      if (keys[i].getDirection() == SORT_ASCENDING) {
+        indicator = _imageAscending;
+      } else {
+        indicator = _imageDecending;
+      }
+      column.setImage(indicator);
+    }
+  }
+
+  private boolean isPendingColumn(int index) {
+    for (TableSortKey key : _pendingSortKeys) {
+      if (key.getColumnIndex() == index)
+        return true;
     }
-    column.setImage(indicator);
+    return _pendingFilterColumns.get(index);
+  }
+
+  private boolean isSortColumn(int index) {
+    for (TableSortKey key : _sortKeys) {
+      if (key.getColumnIndex() == index)
+        return true;
+    }
+    return false;
   }
 
   private void hookControls() {
@@ -1012,43 +1953,356 @@ public final class Table extends Composite {
     removeDisposeListener(_listener);
   }
 
-  private void doRemove(int index) {
-    _items[index].release();
+  private void doRemove(BitSet rows) {
+    final int first = rows.nextSetBit(0);
+    if (first < 0)
+      return;
+
+    // Compact the surviving rows in one pass
+    int count = first;
+    for (int i = first; i < _itemCount; i++) {
+      final TableItem item = _items[i];
+      if (!rows.get(i)) {
+        _items[count++] = item;
+        continue;
+      }
 
-    System.arraycopy(_items, index + 1, _items, index, --_itemCount - index);
-    _items[_itemCount] = null;
+      if (item != null) {
+        _cachedItems.remove(item);
+        item.release();
+      }
+    }
+
+    Arrays.fill(_items, count, _itemCount, null);
+    _itemCount = count;
+    reindex(first, _itemCount);
     updatePreferredSize();
   }
 
+  private void ensureItemCapacity(int capacity) {
+    if (_items.length >= capacity)
+      return;
+
+    final int length = Math.max(4, Math.max(capacity, _items.length * 3 / 2));
+    _items = Arrays.copyOf(_items, length);
+  }
+
+  private void reindex(int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (_items[i] != null)
+        _items[i].setIndex(i);
+    }
+  }
+
+  private TableItem item(int index) {
+    TableItem item = _items[index];
+    if (item == null) {
+      item = new TableItem(this, index, false);
+      _items[index] = item;
+    }
+    return item;
+  }
+
+  private void materializeItems() {
+    if (!_virtual)
+      return;
+
+    for (int i = 0; i < _itemCount; i++) {
+      item(i);
+    }
+  }
+
+  private boolean isCached(TableItem item) {
+    return item != null && (!_virtual || _cachedItems.containsKey(item));
+  }
+
   private void updateFontData() {
     final GC gc = new GC(getShell());
     gc.setFont(getFont());
     _rowHeight = gc.getFontMetrics().getHeight() + 6;
     gc.dispose();
+
+    for (int i = 0; i < _itemCount; i++) {
+      if (_items[i] != null)
+        _items[i].setHeight(-1);
+    }
+    _rowHeightsValid = false;
+    _tiles.invalidate();
+  }
+
+  private int computeRowHeight(int index) {
+    final TableItem item = _items[index];
+    if (item == null)
+      return _rowHeight;
+
+    int height = item.getHeight();
+    if (height >= 0)
+      return height;
+
+    if (!item.isVisible())
+      return 0;
+
+    // Avoid requesting data for rows that have not been painted yet
+    if (!isCached(item))
+      return _rowHeight;
+
+    height = _rowHeight;
+    for (int i = 0; i < _columnCount; i++) {
+      final Image image = item.getImage(i);
+      if (image == null)
+        continue;
+
+      height = Math.max(height, image.getBounds().height + 4);
+    }
+
+    item.setHeight(height);
+    return height;
+  }
+
+  /**
+   * Returns the sum of the heights of the KTable rows in [0, ktableRow).
+   */
+  private int computeRowOffset(int ktableRow) {
+    updateRowHeights();
+
+    int offset = 0;
+    if (_showHeader && ktableRow > 0)
+      offset += _rowHeight;
+
+    final int row = Math.max(0, Math.min(_itemCount, computeRow(ktableRow)));
+    return offset + _rowHeights.sum(row);
+  }
+
+  /**
+   * Brings the row offset index up to date. Returns whether any row height
+   * changed.
+   */
+  private boolean updateRowHeights() {
+    if (!_rowHeightsValid) {
+      final int[] heights = new int[_itemCount];
+      for (int i = 0; i < _itemCount; i++) {
+        heights[i] = computeRowHeight(i);
+      }
+      _rowHeights.reset(heights, _itemCount);
+      _rowHeightsValid = true;
+      _dirtyRowHeights.clear();
+      return true;
+    }
+
+    boolean changed = false;
+    for (int i = _dirtyRowHeights.nextSetBit(0); i >= 0
+        && i < _rowHeights.size(); i = _dirtyRowHeights.nextSetBit(i + 1)) {
+      final int height = computeRowHeight(i);
+      if (_rowHeights.get(i) != height) {
+        _rowHeights.set(i, height);
+        changed = true;
+      }
+    }
+    _dirtyRowHeights.clear();
+    return changed;
+  }
+
+  private void repaintDirtyCells() {
+    final int count = _dirtyCellCount;
+    if (count == 0)
+      return;
+
+    if (_updateDepth > 0 || count > DIRTY_CELL_LIMIT || updateRowHeights()) {
+      redraw();
+      return;
+    }
+
+    _dirtyCellCount = 0;
+    Arrays.sort(_dirtyCells, 0, count);
+    for (int i = 0; i < count;) {
+      final int row = (int) (_dirtyCells[i] >>> 32);
+      int end = i + 1;
+      while (end < count && (int) (_dirtyCells[end] >>> 32) == row) {
+        end++;
+      }
+
+      if (row < _itemCount && getViewIndex(row) >= 0)
+        repaintCells(computeKTableRow(row), i, end);
+
+      i = end;
+    }
+  }
+
+  /**
+   * Repaints the visible dirty cells of a row, merging adjacent columns.
+   * Entries [start, end) of the sorted dirty cells belong to the row.
+   */
+  private void repaintCells(int ktableRow, int start, int end) {
+    final boolean wholeRow = dirtyColumn(start) == ROW;
+    int entry = start;
+    int first = -1;
+    for (int col = 0; col <= _columnCount; col++) {
+      boolean dirty = false;
+      if (col < _columnCount) {
+        while (!wholeRow && entry < end && dirtyColumn(entry) < col) {
+          entry++;
+        }
+        dirty = wholeRow || (entry < end && dirtyColumn(entry) == col);
+        if (dirty && !_table.isCellVisible(col, ktableRow)) {
+          _table.invalidateTile(col, ktableRow);
+          dirty = false;
+        }
+      }
+
+      if (dirty && first < 0) {
+        first = col;
+      } else if (!dirty && first >= 0) {
+        _table.updateTiles(first, col, ktableRow);
+        _table.redraw(first, ktableRow, col - first, 1);
+        first = -1;
+      }
+    }
+  }
+
+  private int dirtyColumn(int entry) {
+    return (int) _dirtyCells[entry] + ROW;
   }
 
   private void updatePreferredSize() {
+    _rowHeightsValid = false;
+    _viewValid = false;
+    _tiles.invalidate();
+    if (_updateDepth > 0) {
+      _preferredSizePending = true;
+      return;
+    }
+
+    _preferredSizePending = false;
     final int columns = Math.max(0, _columnCount);
     _table.setNumColsVisibleInPreferredSize(columns);
     _table.setNumRowsVisibleInPreferredSize(_itemCount);
   }
 
+  private void updateView() {
+    if (_viewValid)
+      return;
+
+    _viewValid = true;
+    _viewRows = null;
+    _viewCount = _itemCount;
+
+    int hidden = 0;
+    for (int i = 0; i < _itemCount; i++) {
+      if (_items[i] != null && !_items[i].isVisible())
+        hidden++;
+    }
+
+    if (hidden == 0)
+      return;
+
+    _viewCount = _itemCount - hidden;
+    _viewRows = new int[_viewCount];
+    int index = 0;
+    for (int i = 0; i < _itemCount; i++) {
+      if (_items[i] == null || _items[i].isVisible())
+        _viewRows[index++] = i;
+    }
+  }
+
+  /**
+   * Merges the items whose visibility flipped into the visible rows, copying
+   * the runs in between rather than visiting every item.
+   *
+   * @param flipped
+   *          the model indices of the items, in any order
+   */
+  private void updateView(int[] flipped, int count) {
+    // Rebuilt on next use anyway
+    if (!_viewValid || count == 0)
+      return;
+
+    if (_viewRows == null) {
+      _viewRows = new int[_itemCount];
+      for (int i = 0; i < _itemCount; i++) {
+        _viewRows[i] = i;
+      }
+    }
+
+    Arrays.sort(flipped, 0, count);
+    final int[] rows = new int[_viewCount + count];
+    int from = 0;
+    int to = 0;
+    for (int i = 0; i < count; i++) {
+      final int found = Arrays.binarySearch(_viewRows, from, _viewCount,
+          flipped[i]);
+      final int end = found < 0 ? -found - 1 : found;
+      System.arraycopy(_viewRows, from, rows, to, end - from);
+      to += end - from;
+      from = end;
+      if (found >= 0) {
+        // Hidden now
+        from++;
+      } else {
+        rows[to++] = flipped[i];
+      }
+    }
+    System.arraycopy(_viewRows, from, rows, to, _viewCount - from);
+    _viewCount = to + _viewCount - from;
+    _viewRows = _viewCount == _itemCount ? null : rows;
+  }
+
+  /**
+   * Follows an item moved from one model index to another in the visible
+   * rows, shifting the rows in between by one.
+   */
+  private void moveInView(int from, int to) {
+    if (!_viewValid || _viewRows == null || from == to)
+      return;
+
+    final int found = Arrays.binarySearch(_viewRows, 0, _viewCount, from);
+    if (found >= 0) {
+      System.arraycopy(_viewRows, found + 1, _viewRows, found, _viewCount
+          - found - 1);
+      _viewCount--;
+    }
+
+    final int low = Math.min(from, to);
+    final int high = Math.max(from, to);
+    final int step = from < to ? -1 : 1;
+    final int first = Arrays.binarySearch(_viewRows, 0, _viewCount, low);
+    for (int i = first < 0 ? -first - 1 : first; i < _viewCount
+        && _viewRows[i] <= high; i++) {
+      _viewRows[i] += step;
+    }
+
+    if (found >= 0) {
+      final int at = -Arrays.binarySearch(_viewRows, 0, _viewCount, to) - 1;
+      System.arraycopy(_viewRows, at, _viewRows, at + 1, _viewCount - at);
+      _viewRows[at] = to;
+      _viewCount++;
+    }
+  }
+
+  private int toViewIndex(int index) {
+    final int view = getViewIndex(index);
+    if (view < 0)
+      return -view - 1;
+
+    return view;
+  }
+
   private int computeRow(int ktableRow) {
     if (_showHeader)
-      return ktableRow - _table.getModel().getFixedHeaderRowCount();
+      return getModelIndex(ktableRow
+          - _table.getModel().getFixedHeaderRowCount());
 
-    return ktableRow;
+    return getModelIndex(ktableRow);
   }
 
   private int computeKTableRow(int row) {
     if (_showHeader)
-      return row + _table.getModel().getFixedHeaderRowCount();
+      return toViewIndex(row) + _table.getModel().getFixedHeaderRowCount();
 
-    return row;
+    return toViewIndex(row);
   }
 
   private static int checkStyle(int style) {
-    final int mask = SWT.BORDER | SWT.MULTI;
+    final int mask = SWT.BORDER | SWT.MULTI | SWT.VIRTUAL;
     return style & mask;
   }
 
@@ -1141,21 +2395,7 @@ public final class Table extends Composite {
       if (rIndex < 0 || rIndex >= _itemCount)
         return 0;
 
-      final TableItem item = getItem(rIndex);
-      if (item.isVisible()) {
-        int height = _rowHeight;
-        for (int i = 0; i < _columnCount; i++) {
-          final Image image = item.getImage(i);
-          if (image == null)
-            continue;
-
-          height = Math.max(height, image.getImageData().height + 4);
-        }
-
-        return height;
-      }
-
-      return 0;
+      return computeRowHeight(rIndex);
     }
 
     @Override
@@ -1201,9 +2441,9 @@ public final class Table extends Composite {
         SWT.BOLD | DefaultCellRenderer.INDICATION_FOCUS_ROW
             | DefaultCellRenderer.STYLE_FLAT);
     private final TextCellRenderer _renderer = new TextCellRenderer(
-        DefaultCellRenderer.INDICATION_FOCUS);
+        DefaultCellRenderer.INDICATION_FOCUS, _colors);
     private final CheckableCellRenderer _checkRenderer = new CheckableCellRenderer(
-        DefaultCellRenderer.INDICATION_FOCUS);
+        DefaultCellRenderer.INDICATION_FOCUS, _colors);
     private final HiddenCellRenderer _hiddenRenderer = new HiddenCellRenderer();
 
     @Override
@@ -1215,12 +2455,14 @@ public final class Table extends Composite {
         _headerRenderer.setImage(null);
         _headerRenderer.setActive(_isActive);
         _headerRenderer.setFiltered(false);
+        _headerRenderer.setBusy(false);
 
         if (col < 0 || col >= _columnCount)
           return _headerRenderer;
 
         final TableColumn column = getColumn(col);
         _headerRenderer.setFiltered(column.getFilter() != null);
+        _headerRenderer.setBusy(isPendingColumn(col));
         _headerRenderer.setImage(column.getImage());
         return _headerRenderer;
       }
@@ -1291,7 +2533,7 @@ public final class Table extends Composite {
 
     @Override
     public int doGetRowCount() {
-      final int rows = Math.max(0, _itemCount - _fixedRowCount);
+      final int rows = Math.max(0, getViewItemCount() - _fixedRowCount);
       return getFixedRowCount() + rows;
     }
 
@@ -1357,20 +2599,28 @@ public final class Table extends Composite {
 
     @Override
     public void columnResized(int col, int newWidth) {
-      // Ignore
+      _tiles.invalidate();
     }
 
     @Override
     public void rowResized(int row, int newHeight) {
-      _items[computeRow(row)].notifyListeners(SWT.Resize, new Event());
+      final TableItem item = _items[computeRow(row)];
+      if (item != null)
+        item.notifyListeners(SWT.Resize, new Event());
     }
 
     @Override
     public void widgetDisposed(DisposeEvent e) {
+      if (_pendingSort != null)
+        _pendingSort.cancel(true);
+      if (_pendingFilter != null)
+        _pendingFilter.cancel(true);
       releaseControls();
 
       _imageAscending.dispose();
       _imageDecending.dispose();
+      _tiles.invalidate();
+      _colors.release();
 
       if (_menuManager != null) {
         _menuManager.dispose();
@@ -1382,6 +2632,10 @@ public final class Table extends Composite {
   final class KTableImpl extends KTable {
 
     private boolean _ignoreMouseMove = false;
+    // Difference between the cell bounds used by KTable and the space the
+    // cell occupies in the layout
+    private int _cellInsetWidth = 0;
+    private int _cellInsetHeight = 0;
 
     private KTableImpl(Composite parent, int style) {
       super(parent, style);
@@ -1400,6 +2654,14 @@ public final class Table extends Composite {
       _ignoreMouseMove = b;
     }
 
+    int leftColumn() {
+      return m_LeftColumn;
+    }
+
+    int topRow() {
+      return m_TopRow;
+    }
+
     @Override
     protected void onMouseMove(MouseEvent e) {
       if (_ignoreMouseMove)
@@ -1436,10 +2698,20 @@ public final class Table extends Composite {
       // Disable default even handling
     }
 
+    @Override
+    public boolean isCellSelected(int col, int row) {
+      // Selection is owned by the table in model coordinates
+      if (_showHeader && row < m_Model.getFixedHeaderRowCount())
+        return false;
+
+      return _selection.contains(col, computeRow(row));
+    }
+
     @Override
     protected void doCalculations() {
       super.doCalculations();
 
+      final boolean wasActive = _isActive;
       _isActive = isFocusControl();
       for (Control control : getChildren()) {
         if (_isActive)
@@ -1447,6 +2719,167 @@ public final class Table extends Composite {
 
         _isActive |= control.isFocusControl();
       }
+
+      // Renderers draw selected cells differently without focus
+      if (_isActive != wasActive)
+        _tiles.invalidate();
+    }
+
+    @Override
+    protected void drawCells(GC gc, Rectangle clipRect, int fromCol,
+        int toCol, int fromRow, int toRow) {
+      // Only the scrollable body is cached, fixed cells are cheap and few
+      if (fromCol < getFixedColumnCount() || fromRow < getFixedRowCount()
+          || fromCol >= toCol || fromRow >= toRow) {
+        super.drawCells(gc, clipRect, fromCol, toCol, fromRow, toRow);
+        return;
+      }
+
+      final Rectangle origin = getCellRect(m_LeftColumn, m_TopRow);
+      _cellInsetWidth = m_Model.getColumnWidth(m_LeftColumn) - origin.width;
+      _cellInsetHeight = m_Model.getRowHeight(m_TopRow) - origin.height;
+
+      final Rectangle area = getClientArea();
+      final Rectangle body = new Rectangle(origin.x, origin.y, area.x
+          + area.width - origin.x, area.y + area.height - origin.y);
+      final Rectangle clip = body.intersection(clipRect);
+      if (clip.width <= 0 || clip.height <= 0)
+        return;
+
+      final int lastCol = Math.min(toCol, m_Model.getColumnCount()) - 1;
+      final int lastRow = Math.min(toRow, m_Model.getRowCount()) - 1;
+      final Rectangle previousClip = gc.getClipping();
+      gc.setClipping(clip);
+      for (int tileRow = fromRow / TileCache.ROWS; tileRow <= lastRow
+          / TileCache.ROWS; tileRow++) {
+        final int y = origin.y + computeRowOffset(firstTileRow(tileRow))
+            - computeRowOffset(m_TopRow);
+        for (int tileCol = fromCol / TileCache.COLUMNS; tileCol <= lastCol
+            / TileCache.COLUMNS; tileCol++) {
+          final Image tile = getTile(tileRow, tileCol);
+          if (tile == null)
+            continue;
+
+          final int x = origin.x
+              + columnOffset(m_LeftColumn, firstTileColumn(tileCol));
+          gc.drawImage(tile, x, y);
+        }
+      }
+      gc.setClipping(previousClip);
+    }
+
+    /**
+     * Drops the cached tile holding the cell.
+     */
+    void invalidateTile(int col, int row) {
+      _tiles.remove(row / TileCache.ROWS, col / TileCache.COLUMNS);
+    }
+
+    /**
+     * Paints the cells [fromCol, toCol) of the row into the cached tiles
+     * holding them, so the following redraw can blit them.
+     */
+    void updateTiles(int fromCol, int toCol, int row) {
+      if (row < getFixedRowCount())
+        return;
+
+      final int tileRow = row / TileCache.ROWS;
+      final int top = computeRowOffset(row)
+          - computeRowOffset(firstTileRow(tileRow));
+      final int height = m_Model.getRowHeight(row);
+      for (int col = Math.max(fromCol, getFixedColumnCount()); col < toCol;) {
+        final int tileCol = col / TileCache.COLUMNS;
+        final int end = Math.min(toCol, lastTileColumn(tileCol));
+        final Image tile = _tiles.get(tileRow, tileCol);
+        if (tile != null) {
+          final GC gc = new GC(tile);
+          int x = columnOffset(firstTileColumn(tileCol), col);
+          for (int c = col; c < end; c++) {
+            final int width = m_Model.getColumnWidth(c);
+            drawTileCell(gc, x, top, width, height, c, row);
+            x += width;
+          }
+          gc.dispose();
+        }
+        col = end;
+      }
+    }
+
+    private Image getTile(int tileRow, int tileCol) {
+      final int firstCol = firstTileColumn(tileCol);
+      final int endCol = lastTileColumn(tileCol);
+      final int firstRow = firstTileRow(tileRow);
+      final int endRow = Math.min((tileRow + 1) * TileCache.ROWS,
+          m_Model.getRowCount());
+      final int width = columnOffset(firstCol, endCol);
+      final int height = computeRowOffset(endRow)
+          - computeRowOffset(firstRow);
+      if (width <= 0 || height <= 0)
+        return null;
+
+      Image tile = _tiles.get(tileRow, tileCol);
+      if (tile != null) {
+        final Rectangle bounds = tile.getBounds();
+        if (bounds.width == width && bounds.height == height)
+          return tile;
+      }
+
+      tile = new Image(getDisplay(), width, height);
+      final GC gc = new GC(tile);
+      gc.setBackground(getBackground());
+      gc.fillRectangle(0, 0, width, height);
+      int y = 0;
+      for (int row = firstRow; row < endRow; row++) {
+        final int rowHeight = m_Model.getRowHeight(row);
+        int x = 0;
+        for (int col = firstCol; col < endCol; col++) {
+          final int colWidth = m_Model.getColumnWidth(col);
+          drawTileCell(gc, x, y, colWidth, rowHeight, col, row);
+          x += colWidth;
+        }
+        y += rowHeight;
+      }
+      gc.dispose();
+
+      _tiles.put(tileRow, tileCol, tile);
+      return tile;
+    }
+
+    private void drawTileCell(GC gc, int x, int y, int width, int height,
+        int col, int row) {
+      final Rectangle rect = new Rectangle(x, y, width - _cellInsetWidth,
+          height - _cellInsetHeight);
+      if (width <= 0 || height <= 0 || rect.width < 0 || rect.height < 0)
+        return;
+
+      m_Model.getCellRenderer(col, row).drawCell(gc, rect, col, row,
+          m_Model.getContentAt(col, row), isCellSelected(col, row), false,
+          false, m_Model);
+    }
+
+    private int firstTileColumn(int tileCol) {
+      return Math.max(tileCol * TileCache.COLUMNS, getFixedColumnCount());
+    }
+
+    private int lastTileColumn(int tileCol) {
+      return Math.min((tileCol + 1) * TileCache.COLUMNS,
+          m_Model.getColumnCount());
+    }
+
+    private int firstTileRow(int tileRow) {
+      return Math.max(tileRow * TileCache.ROWS, getFixedRowCount());
+    }
+
+    /**
+     * Returns the width of the columns [from, to), negated when to precedes
+     * from.
+     */
+    private int columnOffset(int from, int to) {
+      int offset = 0;
+      for (int col = Math.min(from, to); col < Math.max(from, to); col++) {
+        offset += m_Model.getColumnWidth(col);
+      }
+      return from <= to ? offset : -offset;
     }
 
     @Override
@@ -1460,19 +2893,12 @@ public final class Table extends Composite {
       int width = 1;
 
       if (m_Model != null) {
-        // Determine height of header rows
-        for (int i = 0; i < m_Model.getFixedHeaderRowCount(); i++) {
-          height += m_Model.getRowHeight(i);
-        }
-
-        // Add height of data rows to display
-        int rowsVisible = 0;
-        for (int i = m_Model.getFixedHeaderRowCount(); i < m_Model
-            .getFixedHeaderRowCount() + m_numRowsVisibleInPreferredSize
-            && i < m_Model.getRowCount(); i++) {
-          height += m_Model.getRowHeight(i);
-          rowsVisible++;
-        }
+        // Determine height of header rows and data rows to display
+        final int headerRows = m_Model.getFixedHeaderRowCount();
+        final int lastRow = Math.max(headerRows, Math.min(headerRows
+            + m_numRowsVisibleInPreferredSize, m_Model.getRowCount()));
+        height += computeRowOffset(lastRow);
+        final int rowsVisible = lastRow - headerRows;
 
         // Make sure that there is room for m_numRowsVisibleInPreferredSize
         // rows, even if there are not that
@@ -1516,12 +2942,9 @@ public final class Table extends Composite {
       Rectangle r = getClientArea();
       if (m_Model.getRowCount() > 0) {
         r.y += 1;
-
-        for (int i = 0; i < getFixedRowCount(); i++)
-          r.y += m_Model.getRowHeight(i);
-
-        for (int i = 0; i < m_RowsVisible; i++)
-          r.y += m_Model.getRowHeight(i + m_TopRow);
+        r.y += computeRowOffset(getFixedRowCount());
+        r.y += computeRowOffset(m_TopRow + m_RowsVisible)
+            - computeRowOffset(m_TopRow);
       }
 
       int lastColRight = getColumnRight(Math.min(m_LeftColumn
@@ -36,6 +36,7 @@ public final class TableColumn extends Item {
   private boolean _visible = true;
   private boolean _filterable = true;
   private Function<TableItem, Boolean> _filter;
+  private Function<TableItem, String> _textProvider;
 
   /**
    * <p>
@@ -137,12 +138,17 @@ public final class TableColumn extends Item {
   }
 
   public boolean isFilterable() {
-    if (isHeaderColumn())
+    if (isHeaderColumn() || _parent.isVirtual())
       return false;
 
     return _filterable;
   }
 
+  /**
+   * Sets the filter deciding which items are shown. Virtual tables ignore
+   * it, since filtering would request the data of every item; filter their
+   * model instead.
+   */
   public void setFilter(Function<TableItem, Boolean> filter) {
     _filter = filter;
     _parent.updateFilteredItems();
@@ -155,6 +161,21 @@ public final class TableColumn extends Item {
     return _filter;
   }
 
+  /**
+   * Sets the function producing the text of the cells of this column that
+   * have none. A cell asks for its text the first time it is needed, which
+   * for most cells is when they are painted, and keeps it until
+   * {@link TableItem#clearText(int)}.
+   */
+  public void setTextProvider(Function<TableItem, String> provider) {
+    _textProvider = provider;
+    _parent.redraw();
+  }
+
+  public Function<TableItem, String> getTextProvider() {
+    return _textProvider;
+  }
+
   public void addControlListener(ControlListener listener) {
     final TypedListener tListener = new TypedListener(listener);
     addListener(SWT.Resize, tListener);
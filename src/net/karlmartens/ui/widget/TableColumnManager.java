@@ -17,6 +17,8 @@
  */
 package net.karlmartens.ui.widget;
 
+import java.util.Arrays;
+
 import net.karlmartens.ui.action.ResizeAllColumnsAction;
 import net.karlmartens.ui.action.ResizeColumnAction;
 import net.karlmartens.ui.widget.Table.KTableImpl;
@@ -174,6 +176,21 @@ final class TableColumnManager {
     return _selection;
   }
 
+  private TableSortKey[] computeSortKeys(int columnIndex) {
+    final TableSortKey[] keys = _container.getRequestedSortKeys();
+    for (int i = 0; i < keys.length; i++) {
+      final TableSortKey key = keys[i];
+      if (key.getColumnIndex() == columnIndex) {
+        keys[i] = key.withDirection(key.getDirection() * -1);
+        return keys;
+      }
+    }
+
+    final TableSortKey[] result = Arrays.copyOf(keys, keys.length + 1);
+    result[keys.length] = new TableSortKey(columnIndex, Table.SORT_ASCENDING);
+    return result;
+  }
+
   private final Listener _widgetListener = new Listener();
 
   private final class Listener implements MouseListener, MouseMoveListener,
@@ -276,7 +293,11 @@ final class TableColumnManager {
 
         if (isSelectionActive()) {
           if (_columnsSortable) {
-            _container.sort(_columnIndex);
+            if ((e.stateMask & SWT.SHIFT) > 0) {
+              _container.requestSort(computeSortKeys(_columnIndex));
+            } else {
+              _container.requestSort(_columnIndex);
+            }
           }
 
           final TableColumn column = _container.getColumn(_columnIndex);
@@ -17,24 +17,40 @@
  */
 package net.karlmartens.ui.widget;
 
-import static net.karlmartens.ui.widget.Table.SORT_NONE;
-
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.Rectangle;
 
 public final class TableItem extends AbstractTableItem {
 
   private final Table _parent;
   private boolean _isVisible = true;
+  private int _height = -1;
+  private int _index;
 
   public TableItem(Table parent) {
     this(parent, parent.getItemCount());
   }
 
   public TableItem(Table parent, int index) {
-    super(parent, SWT.NONE);
+    this(parent, index, true);
+  }
+
+  TableItem(Table parent, int index, boolean create) {
+    super(parent, SWT.NONE, parent.getCellStore());
     _parent = parent;
-    _parent.createItem(this, index);
+    _index = index;
+    if (create) {
+      try {
+        _parent.createItem(this, index);
+      } catch (RuntimeException e) {
+        // An invalid index must not leave the store row behind
+        super.release();
+        throw e;
+      }
+    }
+    _parent.registerItem(this);
   }
 
   @Override
@@ -42,7 +58,16 @@ public final class TableItem extends AbstractTableItem {
     if (!super.setText(index, text))
       return false;
 
-    _parent.setSortIndicator(-1, SORT_NONE);
+    _parent.updateSortPosition(this, index);
+    return true;
+  }
+
+  @Override
+  public boolean clearText(int index) {
+    if (!super.clearText(index))
+      return false;
+
+    _parent.updateSortPosition(this, index);
     return true;
   }
 
@@ -51,7 +76,29 @@ public final class TableItem extends AbstractTableItem {
   }
 
   void setVisible(boolean visible) {
+    if (_isVisible == visible)
+      return;
+
     _isVisible = visible;
+    _parent.invalidateRowHeight(this);
+  }
+
+  @Override
+  public void setImage(int index, Image image) {
+    super.setImage(index, image);
+    _parent.invalidateRowHeight(this);
+  }
+
+  @Override
+  public void setFont(Font font) {
+    super.setFont(font);
+    _parent.invalidateRowHeight(this);
+  }
+
+  @Override
+  public void setFont(int index, Font font) {
+    super.setFont(index, font);
+    _parent.invalidateRowHeight(this);
   }
 
   public Table getParent() {
@@ -74,6 +121,49 @@ public final class TableItem extends AbstractTableItem {
     return _parent.getImageBounds(this, index);
   }
 
+  int getHeight() {
+    return _height;
+  }
+
+  void setHeight(int height) {
+    _height = height;
+  }
+
+  int getIndex() {
+    return _index;
+  }
+
+  @Override
+  void release() {
+    _parent.unregisterItem(this);
+    super.release();
+  }
+
+  void setIndex(int index) {
+    _index = index;
+  }
+
+  @Override
+  void clear() {
+    super.clear();
+    _parent.invalidateRowHeight(this);
+  }
+
+  @Override
+  void checkData() {
+    _parent.checkData(this);
+  }
+
+  @Override
+  String computeText(int index) {
+    return _parent.computeText(this, index);
+  }
+
+  @Override
+  void redraw(int index) {
+    _parent.redraw(this, index);
+  }
+
   @Override
   protected int doGetColumnCount() {
     return _parent.getColumnCount();
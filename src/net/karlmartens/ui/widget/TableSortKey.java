@@ -0,0 +1,63 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import java.util.Comparator;
+
+/**
+ * One key of a multi column sort: the column to sort by, the direction and
+ * optionally the comparator used for the column's text. When no comparator is
+ * given numbers are compared by value and other text alphabetically.
+ */
+public final class TableSortKey {
+
+  private final int _columnIndex;
+  private final int _direction;
+  private final Comparator<String> _comparator;
+
+  public TableSortKey(int columnIndex, int direction) {
+    this(columnIndex, direction, null);
+  }
+
+  public TableSortKey(int columnIndex, int direction,
+      Comparator<String> comparator) {
+    _columnIndex = columnIndex;
+    _direction = direction;
+    _comparator = comparator;
+  }
+
+  public int getColumnIndex() {
+    return _columnIndex;
+  }
+
+  public int getDirection() {
+    return _direction;
+  }
+
+  public Comparator<String> getComparator() {
+    return _comparator;
+  }
+
+  TableSortKey withColumnIndex(int columnIndex) {
+    return new TableSortKey(columnIndex, _direction, _comparator);
+  }
+
+  TableSortKey withDirection(int direction) {
+    return new TableSortKey(_columnIndex, direction, _comparator);
+  }
+}
@@ -0,0 +1,351 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+import net.karlmartens.platform.util.NumberStringComparator;
+import net.karlmartens.ui.util.DecimalFormatter;
+import net.karlmartens.ui.util.DoubleFormat;
+import net.karlmartens.ui.util.Workers;
+
+/**
+ * Sorts rows by keys extracted once per row. Texts are parsed once as numbers
+ * formatted for display in the default locale, blank texts sorting before
+ * any number, and compared as primitive doubles. Texts that are not numbers
+ * fall back to comparing the text. Multiple
+ * sort keys are compared in order. The sort is stable and computes a
+ * permutation of row indices; large inputs are sorted in parallel chunks that
+ * are then merged. A sort stops with a {@link CancellationException} when its
+ * thread is interrupted.
+ */
+final class TableSorter {
+
+  static final int PARALLEL_THRESHOLD = 50000;
+
+  private static final int INSERTION_SORT_THRESHOLD = 32;
+  private static final int CANCELLATION_CHECK_THRESHOLD = 4096;
+  private static final DoubleFormat NUMBER_FORMAT = DecimalFormatter
+      .getInstance();
+  private static final double BLANK = Double.NEGATIVE_INFINITY;
+
+  private TableSorter() {
+    // Nothing to do
+  }
+
+  /**
+   * @param columns
+   *          the text of the rows to sort, one array per sort key
+   */
+  static int[] sort(String[][] columns, TableSortKey[] sortKeys) {
+    final Comparator<String> defaultComparator = new NumberStringComparator();
+    final Keys[] keys = new Keys[sortKeys.length];
+    boolean parallel = true;
+    for (int i = 0; i < sortKeys.length; i++) {
+      final TableSortKey key = sortKeys[i];
+      final String[] texts = columns[i];
+      final double[] numbers = new double[texts.length];
+      final BitSet parsed = new BitSet(texts.length);
+      if (key.getComparator() == null) {
+        for (int row = 0; row < texts.length; row++) {
+          if (parse(texts[row], numbers, row))
+            parsed.set(row);
+        }
+      }
+
+      final int count = parsed.cardinality();
+      if (texts.length > 0 && count == texts.length) {
+        keys[i] = new NumberKeys(numbers, key.getDirection());
+      } else if (count > 0) {
+        keys[i] = new MixedKeys(numbers, parsed, texts, defaultComparator,
+            key.getDirection());
+        parallel = false;
+      } else {
+        // Comparators are not known to be thread safe
+        keys[i] = new TextKeys(columns[i], comparator(key, defaultComparator),
+            key.getDirection());
+        parallel = false;
+      }
+    }
+
+    final int length = columns.length == 0 ? 0 : columns[0].length;
+    if (keys.length == 1)
+      return sort(keys[0], length, parallel);
+
+    return sort(new CompoundKeys(keys), length, parallel);
+  }
+
+  static int compare(TableItem first, TableItem second, TableSortKey[] keys) {
+    final Comparator<String> defaultComparator = new NumberStringComparator();
+    final double[] numbers = new double[2];
+    for (TableSortKey key : keys) {
+      final int index = key.getColumnIndex();
+      final String firstText = first.getText(index);
+      final String secondText = second.getText(index);
+      final int result;
+      if (key.getComparator() == null && parse(firstText, numbers, 0)
+          && parse(secondText, numbers, 1)) {
+        result = Double.compare(numbers[0], numbers[1]);
+      } else {
+        result = comparator(key, defaultComparator).compare(firstText,
+            secondText);
+      }
+      if (result != 0)
+        return key.getDirection() * result;
+    }
+    return 0;
+  }
+
+  private static Comparator<String> comparator(TableSortKey key,
+      Comparator<String> defaultComparator) {
+    final Comparator<String> comparator = key.getComparator();
+    if (comparator == null)
+      return defaultComparator;
+
+    return comparator;
+  }
+
+  /**
+   * Parses the text into <code>numbers[index]</code>, blank text giving a
+   * key below any number, and returns whether it is a number.
+   */
+  private static boolean parse(String text, double[] numbers, int index) {
+    if (text == null) {
+      numbers[index] = BLANK;
+      return true;
+    }
+
+    boolean blank = true;
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (Character.isDigit(c)) {
+        blank = false;
+      } else if (!Character.isSpaceChar(c) && !Character.isWhitespace(c)
+          && ".,'()+-eE\u2212".indexOf(c) < 0) {
+        // Not a number, skip the cost of a failed parse
+        return false;
+      }
+    }
+    if (blank) {
+      // Signs or separators without any digit are text
+      if (text.trim().length() > 0)
+        return false;
+
+      numbers[index] = BLANK;
+      return true;
+    }
+
+    try {
+      numbers[index] = NUMBER_FORMAT.parse(text);
+      return true;
+    } catch (ParseException e) {
+      // Exponents are not part of the display format
+    }
+    try {
+      numbers[index] = Double.parseDouble(text.trim());
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static int[] sort(final Keys keys, int length, boolean parallel) {
+    final int[] order = new int[length];
+    for (int i = 0; i < length; i++) {
+      order[i] = i;
+    }
+
+    final int[] buffer = new int[length];
+    final int parallelism = Workers.getParallelism();
+    if (!parallel || length < PARALLEL_THRESHOLD || parallelism <= 1) {
+      mergeSort(keys, order, buffer, 0, length);
+      return order;
+    }
+
+    final int chunk = (length + parallelism - 1) / parallelism;
+    final List<Callable<Void>> sorts = new ArrayList<Callable<Void>>();
+    for (int start = 0; start < length; start += chunk) {
+      final int lo = start;
+      final int hi = Math.min(length, start + chunk);
+      sorts.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          mergeSort(keys, order, buffer, lo, hi);
+          return null;
+        }
+      });
+    }
+    Workers.invokeAll(sorts);
+
+    for (int width = chunk; width < length; width *= 2) {
+      checkCancelled();
+      final List<Callable<Void>> merges = new ArrayList<Callable<Void>>();
+      for (int start = 0; start + width < length; start += 2 * width) {
+        final int lo = start;
+        final int mid = start + width;
+        final int hi = Math.min(length, start + 2 * width);
+        merges.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            merge(keys, order, buffer, lo, mid, hi);
+            return null;
+          }
+        });
+      }
+      Workers.invokeAll(merges);
+    }
+
+    return order;
+  }
+
+  private static void checkCancelled() {
+    if (Thread.currentThread().isInterrupted())
+      throw new CancellationException();
+  }
+
+  private static void mergeSort(Keys keys, int[] order, int[] buffer,
+      int lo, int hi) {
+    if (hi - lo >= CANCELLATION_CHECK_THRESHOLD)
+      checkCancelled();
+
+    if (hi - lo <= INSERTION_SORT_THRESHOLD) {
+      for (int i = lo + 1; i < hi; i++) {
+        final int value = order[i];
+        int j = i - 1;
+        while (j >= lo && keys.compare(order[j], value) > 0) {
+          order[j + 1] = order[j];
+          j--;
+        }
+        order[j + 1] = value;
+      }
+      return;
+    }
+
+    final int mid = (lo + hi) >>> 1;
+    mergeSort(keys, order, buffer, lo, mid);
+    mergeSort(keys, order, buffer, mid, hi);
+    merge(keys, order, buffer, lo, mid, hi);
+  }
+
+  private static void merge(Keys keys, int[] order, int[] buffer, int lo,
+      int mid, int hi) {
+    if (keys.compare(order[mid - 1], order[mid]) <= 0)
+      return;
+
+    System.arraycopy(order, lo, buffer, lo, hi - lo);
+    int i = lo;
+    int j = mid;
+    for (int k = lo; k < hi; k++) {
+      if (i >= mid) {
+        order[k] = buffer[j++];
+      } else if (j >= hi || keys.compare(buffer[i], buffer[j]) <= 0) {
+        order[k] = buffer[i++];
+      } else {
+        order[k] = buffer[j++];
+      }
+    }
+  }
+
+  private interface Keys {
+    int compare(int first, int second);
+  }
+
+  private static final class CompoundKeys implements Keys {
+    private final Keys[] _keys;
+
+    CompoundKeys(Keys[] keys) {
+      _keys = keys;
+    }
+
+    @Override
+    public int compare(int first, int second) {
+      for (Keys keys : _keys) {
+        final int result = keys.compare(first, second);
+        if (result != 0)
+          return result;
+      }
+      return 0;
+    }
+  }
+
+  private static final class NumberKeys implements Keys {
+    private final double[] _keys;
+    private final int _direction;
+
+    NumberKeys(double[] keys, int direction) {
+      _keys = keys;
+      _direction = direction;
+    }
+
+    @Override
+    public int compare(int first, int second) {
+      return _direction * Double.compare(_keys[first], _keys[second]);
+    }
+  }
+
+  /**
+   * Compares numbers as numbers and anything else by its text.
+   */
+  private static final class MixedKeys implements Keys {
+    private final double[] _numbers;
+    private final BitSet _parsed;
+    private final String[] _texts;
+    private final Comparator<String> _comparator;
+    private final int _direction;
+
+    MixedKeys(double[] numbers, BitSet parsed, String[] texts,
+        Comparator<String> comparator, int direction) {
+      _numbers = numbers;
+      _parsed = parsed;
+      _texts = texts;
+      _comparator = comparator;
+      _direction = direction;
+    }
+
+    @Override
+    public int compare(int first, int second) {
+      if (_parsed.get(first) && _parsed.get(second))
+        return _direction * Double.compare(_numbers[first], _numbers[second]);
+
+      return _direction * _comparator.compare(_texts[first], _texts[second]);
+    }
+  }
+
+  private static final class TextKeys implements Keys {
+    private final String[] _keys;
+    private final Comparator<String> _comparator;
+    private final int _direction;
+
+    TextKeys(String[] keys, Comparator<String> comparator, int direction) {
+      _keys = keys;
+      _comparator = comparator;
+      _direction = direction;
+    }
+
+    @Override
+    public int compare(int first, int second) {
+      return _direction * _comparator.compare(_keys[first], _keys[second]);
+    }
+  }
+}
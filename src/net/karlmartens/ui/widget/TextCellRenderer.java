@@ -17,18 +17,18 @@
  */
 package net.karlmartens.ui.widget;
 
-import net.karlmartens.ui.util.Colors;
+import net.karlmartens.ui.util.BlendedColors;
 
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
-import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.graphics.Rectangle;
 
 import de.kupzog.ktable.KTableModel;
 
 class TextCellRenderer extends de.kupzog.ktable.renderers.TextCellRenderer {
 
+  private final BlendedColors _colors;
   private Image _image;
   private boolean _active;
 
@@ -49,9 +49,12 @@ class TextCellRenderer extends de.kupzog.ktable.renderers.TextCellRenderer {
    *          the right top corner of the cell.<br>
    *          - SWT.BOLD Makes the renderer draw bold text.<br>
    *          - SWT.ITALIC Makes the renderer draw italic text<br>
+   * @param colors
+   *          Supplies the blended focus background.
    */
-  public TextCellRenderer(int style) {
+  public TextCellRenderer(int style, BlendedColors colors) {
     super(style);
+    _colors = colors;
   }
 
   public void setActive(boolean active) {
@@ -84,10 +87,10 @@ class TextCellRenderer extends de.kupzog.ktable.renderers.TextCellRenderer {
       // draw content:
       rect = drawDefaultSolidCellLine(gc, rect, COLOR_LINE_LIGHTGRAY,
           COLOR_LINE_LIGHTGRAY);
-      final RGB blended = Colors.blend(getBackground().getRGB(),
+      final Color blended = _colors.get(getBackground().getRGB(),
           COLOR_BGFOCUS.getRGB(), 0.75);
       drawCellContent(gc, rect, content.toString(), _image, getForeground(),
-          new Color(null, blended));
+          blended);
       if (_active)
         gc.drawFocus(rect.x, rect.y, rect.width, rect.height);
 
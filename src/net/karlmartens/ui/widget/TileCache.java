@@ -0,0 +1,99 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Image;
+
+/**
+ * Least recently used cache of rendered blocks of scrollable table cells.
+ * Tiles are addressed in KTable coordinates, so any change to the row order,
+ * row heights or column widths must invalidate the cache.
+ */
+final class TileCache {
+
+  static final int ROWS = 16;
+  static final int COLUMNS = 4;
+
+  private static final int CAPACITY = 48;
+
+  private final Map<Long, Image> _tiles = new LinkedHashMap<Long, Image>(
+      CAPACITY, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Image> eldest) {
+      if (size() <= CAPACITY)
+        return false;
+
+      eldest.getValue().dispose();
+      return true;
+    }
+  };
+
+  Image get(int tileRow, int tileColumn) {
+    return _tiles.get(key(tileRow, tileColumn));
+  }
+
+  void put(int tileRow, int tileColumn, Image image) {
+    final Image previous = _tiles.put(key(tileRow, tileColumn), image);
+    if (previous != null && previous != image)
+      previous.dispose();
+  }
+
+  void remove(int tileRow, int tileColumn) {
+    final Image image = _tiles.remove(key(tileRow, tileColumn));
+    if (image != null)
+      image.dispose();
+  }
+
+  /**
+   * Drops the tiles holding any of the rows in [fromRow, toRow).
+   */
+  void invalidateRows(int fromRow, int toRow) {
+    if (_tiles.isEmpty() || fromRow >= toRow)
+      return;
+
+    final int first = fromRow / ROWS;
+    final int last = (toRow - 1) / ROWS;
+    for (Iterator<Map.Entry<Long, Image>> it = _tiles.entrySet().iterator(); it
+        .hasNext();) {
+      final Map.Entry<Long, Image> entry = it.next();
+      final int tileRow = (int) (entry.getKey() >> 32);
+      if (tileRow < first || tileRow > last)
+        continue;
+
+      entry.getValue().dispose();
+      it.remove();
+    }
+  }
+
+  void invalidate() {
+    for (Image image : _tiles.values()) {
+      image.dispose();
+    }
+    _tiles.clear();
+  }
+
+  private static long key(int tileRow, int tileColumn) {
+    return ((long) tileRow << 32) | (tileColumn & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,168 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+public final class DecimalFormatterTest {
+
+  private static final Locale[] LOCALES = { Locale.US, Locale.GERMANY,
+      Locale.FRANCE };
+
+  @Test
+  public void testFormatMatchesDecimalFormat() throws Exception {
+    final Random random = new Random(42);
+    for (Locale locale : LOCALES) {
+      for (int min = 0; min <= 2; min++) {
+        for (int max = min; max <= 4; max++) {
+          final DecimalFormatter formatter = DecimalFormatter.getInstance(
+              locale).withFractionDigits(min, max);
+          final DecimalFormat format = newDecimalFormat(locale, min, max);
+          for (int i = 0; i < 10000; i++) {
+            final double value = (random.nextDouble() - 0.5)
+                * Math.pow(10, random.nextInt(14) - 3);
+            final String text = formatter.format(value);
+            assertEquals(stripNegativeZero(format.format(value)), text);
+            assertEquals(format.parse(text).doubleValue(),
+                formatter.parse(text));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTies() {
+    final DecimalFormatter formatter = DecimalFormatter.getInstance(Locale.US)
+        .withFractionDigits(2, 2);
+    assertEquals("0.12", formatter.format(0.125));
+    assertEquals("0.38", formatter.format(0.375));
+    assertEquals("1.00", formatter.format(1.005));
+    assertEquals("2,567,527,939.91", formatter.format(2567527939.915));
+  }
+
+  @Test
+  public void testNegatives() throws Exception {
+    final DecimalFormatter formatter = DecimalFormatter.getInstance(Locale.US)
+        .withFractionDigits(2, 2);
+    assertEquals("-1,234.50", formatter.format(-1234.5));
+    assertEquals("0.00", formatter.format(-0.001));
+
+    final DecimalFormatter parentheses = formatter.withParentheses(true);
+    assertEquals("(1,234.50)", parentheses.format(-1234.5));
+    assertEquals(-1234.5, parentheses.parse("(1,234.50)"));
+    assertEquals(-1234.5, parentheses.parse("-1,234.50"));
+  }
+
+  @Test
+  public void testGrouping() throws Exception {
+    final DecimalFormatter formatter = DecimalFormatter.getInstance(
+        Locale.GERMANY).withFractionDigits(1, 1);
+    assertEquals("1.234.567,9", formatter.format(1234567.89));
+    assertEquals("1234567,9", formatter.withGrouping(false).format(1234567.89));
+    assertEquals(1234567.9, formatter.parse(" 1.234.567,9 "));
+  }
+
+  @Test
+  public void testLargeValues() throws Exception {
+    final DecimalFormatter formatter = DecimalFormatter.getInstance(Locale.US)
+        .withFractionDigits(2, 2);
+    assertEquals("100,000,000,000,000,000,000.00", formatter.format(1e20));
+    assertEquals(1.2345678901234568E20,
+        formatter.parse("123,456,789,012,345,678,901.5"));
+    assertTrue(Double.isNaN(formatter.parse(formatter.format(Double.NaN))));
+
+    final DecimalFormat reference = newDecimalFormat(Locale.US, 2, 2);
+    for (double value : new double[] { 1e50, -1e100, Double.MAX_VALUE }) {
+      assertEquals(reference.format(value), formatter.format(value));
+      assertEquals(value, formatter.parse(formatter.format(value)));
+    }
+  }
+
+  @Test(expected = ParseException.class)
+  public void testTrailingText() throws Exception {
+    DecimalFormatter.getInstance(Locale.US).parse("12abc");
+  }
+
+  @Test(expected = ParseException.class)
+  public void testEmpty() throws Exception {
+    DecimalFormatter.getInstance(Locale.US).parse(" ");
+  }
+
+  private static DecimalFormat newDecimalFormat(Locale locale, int min,
+      int max) {
+    final DecimalFormat format = (DecimalFormat) NumberFormat
+        .getNumberInstance(locale);
+    format.setMinimumFractionDigits(min);
+    format.setMaximumFractionDigits(max);
+    format.setRoundingMode(RoundingMode.HALF_EVEN);
+    return format;
+  }
+
+  private static String stripNegativeZero(String text) {
+    // DecimalFormat keeps the sign of negatives that round to zero
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c >= '1' && c <= '9')
+        return text;
+    }
+    return text.startsWith("-") ? text.substring(1) : text;
+  }
+
+  /**
+   * Formats and parses back a million values with both formats.
+   */
+  public static void main(String[] args) throws Exception {
+    final Random random = new Random(42);
+    final double[] values = new double[1000000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (random.nextDouble() - 0.5) * 200000;
+    }
+
+    final NumberFormat format = NumberFormat.getNumberInstance();
+    final DecimalFormatter formatter = DecimalFormatter.getInstance();
+    for (int round = 0; round < 5; round++) {
+      double sum = 0;
+      long start = System.nanoTime();
+      for (double value : values) {
+        sum += format.parse(format.format(value)).doubleValue();
+      }
+      final long numberFormat = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (double value : values) {
+        sum += formatter.parse(formatter.format(value));
+      }
+      final long decimalFormatter = System.nanoTime() - start;
+
+      System.out.println(String.format(
+          "NumberFormat %d ms, DecimalFormatter %d ms (%f)",
+          numberFormat / 1000000, decimalFormatter / 1000000, sum));
+    }
+  }
+}
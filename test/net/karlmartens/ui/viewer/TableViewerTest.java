@@ -17,6 +17,7 @@
  */
 package net.karlmartens.ui.viewer;
 
+import static junit.framework.Assert.assertEquals;
 import static net.karlmartens.ui.widget.ClipboardStrategy.OPERATION_COPY;
 import static net.karlmartens.ui.widget.ClipboardStrategy.OPERATION_CUT;
 import static net.karlmartens.ui.widget.ClipboardStrategy.OPERATION_DELETE;
@@ -24,6 +25,9 @@ import static net.karlmartens.ui.widget.ClipboardStrategy.OPERATION_PASTE;
 import static net.karlmartens.ui.widget.ClipboardStrategy.OPERATION_SELECT_ALL;
 import net.karlmartens.platform.util.NumberStringComparator;
 import net.karlmartens.ui.Images;
+import net.karlmartens.ui.SwtTester;
+import net.karlmartens.ui.SwtTester.Initializer;
+import net.karlmartens.ui.SwtTester.Task;
 import net.karlmartens.ui.dialog.ConfigureColumnsDialog;
 import net.karlmartens.ui.widget.Table;
 
@@ -33,6 +37,7 @@ import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.ColumnLabelProvider;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
+import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerComparator;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -43,9 +48,66 @@ import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Shell;
 import org.joda.time.LocalDate;
+import org.junit.Test;
 
 public final class TableViewerTest {
 
+  @Test
+  public void testSortVirtual() {
+    final String[] input = new String[5000];
+    for (int i = 0; i < input.length; i++) {
+      input[i] = String.format("Item %04d", i);
+    }
+
+    SwtTester//
+        .test(new Initializer<TableViewer>() {
+          @Override
+          public TableViewer run(Shell shell) {
+            final TableViewer viewer = new TableViewer(shell, SWT.VIRTUAL);
+            viewer.setContentProvider(new ArrayContentProvider());
+
+            final TableViewerColumn c = new TableViewerColumn(viewer, SWT.NONE);
+            c.setLabelProvider(new ColumnLabelProvider());
+            c.getColumn().setText("Name");
+            c.getColumn().setWidth(75);
+
+            viewer.getControl().addColumnSortSupport();
+            viewer.setInput(input);
+            return viewer;
+          }
+        })//
+        .add(new Task<TableViewer>() {
+          @Override
+          public void run(TableViewer context) {
+            final Table table = context.getControl();
+
+            // The order of a virtual table is left to the viewer
+            table.sort(0, Table.SORT_DESCENDING);
+            assertEquals(0, table.getSortKeys().length);
+            assertEquals(input[0], table.getItem(0).getText(0));
+
+            context.setComparator(new ViewerComparator() {
+              @Override
+              public int compare(Viewer viewer, Object e1, Object e2) {
+                return ((String) e2).compareTo((String) e1);
+              }
+            });
+
+            // Scrolling through every row requests more rows than are
+            // cached, so the first ones are requested again on the way back
+            final int last = input.length - 1;
+            for (int i = 0; i < input.length; i++) {
+              table.showItem(table.getItem(i));
+              assertEquals(input[last - i], table.getItem(i).getText(0));
+            }
+            for (int i = input.length - 1; i >= 0; i--) {
+              table.showItem(table.getItem(i));
+              assertEquals(input[last - i], table.getItem(i).getText(0));
+            }
+          }
+        }).run();
+  }
+
   public static void main(String[] args) throws Exception {
     final Image[] images = new Image[] {//
     Images.FILTER.createImage(), //
@@ -18,6 +18,7 @@
 package net.karlmartens.ui.viewer;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static net.karlmartens.ui.widget.ClipboardStrategy.OPERATION_COPY;
@@ -26,7 +27,9 @@ import static net.karlmartens.ui.widget.ClipboardStrategy.OPERATION_DELETE;
 import static net.karlmartens.ui.widget.ClipboardStrategy.OPERATION_PASTE;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import net.karlmartens.platform.text.LocalDateFormat;
 import net.karlmartens.platform.util.NumberStringComparator;
@@ -176,6 +179,31 @@ public final class TimeSeriesTableViewerTest {
         }).run();
   }
 
+  @Test
+  public void testRemoveReleasesValues() throws Exception {
+    SwtTester //
+        .test(_initializer) //
+        .add(new Task<TimeSeriesTableViewer>() {
+          @Override
+          public void run(TimeSeriesTableViewer context) {
+            context.getValue(_input[10], 0);
+            assertTrue(context.isLoaded(_input[10]));
+            context.remove((Object) _input[10]);
+            assertFalse(context.isLoaded(_input[10]));
+
+            final List<Object> input = new ArrayList<Object>(
+                Arrays.asList(_input));
+            context.setInput(input);
+            context.getValue(_input[499], 0);
+            assertTrue(context.isLoaded(_input[499]));
+            input.remove(499);
+            context.refresh(false);
+            assertEquals(499, context.getControl().getItemCount());
+            assertFalse(context.isLoaded(_input[499]));
+          }
+        }).run();
+  }
+
   private static int[] getColumnWidths(Table table) {
     final int columnCount = table.getColumnCount();
     final int[] widths = new int[columnCount];
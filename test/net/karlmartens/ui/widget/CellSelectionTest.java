@@ -0,0 +1,158 @@
+/**
+ *   Copyright 2011 Karl Martens
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *       
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *   net.karlmartens.ui, is a library of UI widgets
+ */
+package net.karlmartens.ui.widget;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
+import org.junit.Test;
+
+public final class CellSelectionTest {
+
+  @Test
+  public void testOfJoinsCells() {
+    final List<Point> cells = new ArrayList<Point>();
+    for (int y = 10; y < 510; y++) {
+      for (int x = 2; x < 102; x++) {
+        cells.add(new Point(x, y));
+      }
+    }
+    cells.add(new Point(5, 20));
+    Collections.shuffle(cells, new Random(42));
+
+    final CellSelection selection = CellSelection.of(cells
+        .toArray(new Point[cells.size()]));
+    assertEquals(1, selection.getRanges().length);
+    assertEquals(new Rectangle(2, 10, 100, 500), selection.getRanges()[0]);
+    assertEquals(50000, selection.getCellCount());
+  }
+
+  @Test
+  public void testAddJoinsAdjacentRanges() {
+    final CellSelection selection = new CellSelection();
+    for (int y = 0; y < 20; y++) {
+      for (int x = 0; x < 5; x++) {
+        selection.add(x, y);
+      }
+    }
+    assertEquals(1, selection.getRanges().length);
+
+    selection.add(new Rectangle(5, 0, 3, 20));
+    assertEquals(1, selection.getRanges().length);
+    assertEquals(new Rectangle(0, 0, 8, 20), selection.getBounds());
+  }
+
+  @Test
+  public void testContains() {
+    final CellSelection selection = new CellSelection();
+    selection.add(new Rectangle(0, 0, 4, 4));
+    selection.add(new Rectangle(2, 2, 4, 4));
+    selection.add(new Rectangle(10, 1, 1, 10));
+
+    assertTrue(selection.contains(0, 0));
+    assertTrue(selection.contains(3, 3));
+    assertTrue(selection.contains(5, 5));
+    assertTrue(selection.contains(10, 10));
+    assertFalse(selection.contains(4, 0));
+    assertFalse(selection.contains(0, 4));
+    assertFalse(selection.contains(6, 6));
+    assertFalse(selection.contains(10, 0));
+    assertFalse(selection.contains(10, 11));
+    assertTrue(selection.containsRow(10));
+    assertFalse(selection.containsRow(11));
+  }
+
+  @Test
+  public void testIteratorVisitsEachCellOnce() {
+    final CellSelection selection = new CellSelection();
+    selection.add(new Rectangle(0, 0, 4, 4));
+    selection.add(new Rectangle(2, 2, 4, 4));
+
+    final Set<Point> cells = new HashSet<Point>();
+    for (Point cell : selection) {
+      assertTrue(cells.add(cell));
+      assertTrue(selection.contains(cell.x, cell.y));
+    }
+    assertEquals(28, cells.size());
+    assertEquals(28, selection.getCellCount());
+    assertEquals(28, selection.toArray().length);
+  }
+
+  @Test
+  public void testRowsAndColumns() {
+    final CellSelection selection = CellSelection.of(new Point[] {
+        new Point(1, 7), new Point(3, 2), new Point(3, 3), new Point(1, 3) });
+
+    assertTrue(Arrays.equals(new int[] { 2, 3, 7 }, selection.getRows()));
+    assertTrue(Arrays.equals(new int[] { 1, 3 }, selection.getColumns()));
+  }
+
+  @Test
+  public void testRemove() {
+    final CellSelection selection = new CellSelection();
+    selection.add(new Rectangle(0, 0, 5, 5));
+    selection.remove(new Rectangle(1, 1, 3, 3));
+
+    assertEquals(16, selection.getCellCount());
+    assertFalse(selection.contains(2, 2));
+    assertFalse(selection.contains(3, 3));
+    assertTrue(selection.contains(0, 2));
+    assertTrue(selection.contains(4, 2));
+    assertTrue(selection.contains(2, 0));
+    assertTrue(selection.contains(2, 4));
+
+    selection.remove(new Rectangle(0, 0, 5, 5));
+    assertTrue(selection.isEmpty());
+  }
+
+  @Test(timeout = 10000)
+  public void testManyRuns() {
+    final int rows = 100000;
+    final List<Rectangle> runs = new ArrayList<Rectangle>();
+    final CellSelection added = new CellSelection();
+    for (int y = 0; y < rows; y += 2) {
+      final Rectangle run = new Rectangle(0, y, 10, 1);
+      runs.add(run);
+      added.add(run);
+    }
+    added.add(new Rectangle(10, 0, 2, 1));
+
+    final CellSelection built = CellSelection.ofDisjoint(runs);
+    assertEquals(rows / 2, built.getRanges().length);
+    assertEquals(rows / 2, added.getRanges().length);
+    assertEquals(rows / 2 * 10 + 2, added.getCellCount());
+    for (int y = 0; y < rows; y++) {
+      assertEquals(y % 2 == 0, built.containsRow(y));
+      assertEquals(y % 2 == 0, added.contains(5, y));
+    }
+    assertTrue(added.contains(11, 0));
+    assertFalse(added.contains(11, 2));
+    assertEquals(rows / 2, built.getRows().length);
+  }
+}